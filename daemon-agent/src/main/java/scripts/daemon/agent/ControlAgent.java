@@ -0,0 +1,173 @@
+package scripts.daemon.agent;
+
+import java.io.IOException;
+import java.lang.instrument.Instrumentation;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.PosixFilePermissions;
+
+/***
+ * A Java agent that answers the daemon script's requests from inside the running application, over a Unix-domain
+ * socket. The script attaches it at launch with <code>-javaagent:daemon-agent.jar=&lt;socket&gt;</code>, and then no
+ * longer has to start a JDK tool (jps, jstack, jcmd) - and with it a second JVM - to find out about the application.
+ * That matters most when the host is short of memory, which is exactly when a thread dump is wanted.
+ * <p />
+ *
+ * The protocol is one request per connection: the client sends a single line naming the request, and the agent
+ * replies with <code>ok</code> or <code>error &lt;reason&gt;</code> on the first line, then the body, then closes the
+ * connection. See {@link ControlCommands} for the requests.
+ * <p />
+ *
+ * The socket is only accessible to the user the application runs as. Requests are served one at a time by a single
+ * daemon thread, which never keeps the JVM alive.
+ */
+public final class ControlAgent implements Runnable {
+
+    /** The longest request line that is read */
+    private static final int MAX_REQUEST_LENGTH = 256;
+
+    private final Path socketFile;
+    private final ControlCommands commands;
+    private final ServerSocketChannel server;
+
+    /** The identity (device and inode) of the socket file that was bound, to tell it apart from a later one */
+    private final Object socketKey;
+
+    ControlAgent(Path socketFile, ControlCommands commands) throws IOException {
+        this.socketFile = socketFile;
+        this.commands = commands;
+
+        // A socket left behind by a JVM that did not exit cleanly would stop us binding
+        Files.deleteIfExists(socketFile);
+        this.server = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+        try {
+            bindPrivately();
+        } catch (IOException | RuntimeException ex) {
+            server.close();
+            throw ex;
+        }
+        this.socketKey = Files.readAttributes(socketFile, BasicFileAttributes.class).fileKey();
+    }
+
+    /***
+     * Bind the socket where no other user can connect to it before its permissions are narrowed: binding creates it
+     * with the process's umask, so it is bound inside a directory only we can enter, restricted, and only then moved to
+     * its own path. The directory's name is no longer than the socket's, so the bound path fits whenever the final one
+     * does.
+     */
+    private void bindPrivately() throws IOException {
+        Path bindDirectory = socketFile.resolveSibling("." + ProcessHandle.current().pid());
+        Path boundFile = bindDirectory.resolve("s");
+        Files.deleteIfExists(boundFile);
+        Files.deleteIfExists(bindDirectory);
+        Files.createDirectory(bindDirectory,
+                PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rwx------")));
+        try {
+            server.bind(UnixDomainSocketAddress.of(boundFile));
+            Files.setPosixFilePermissions(boundFile, PosixFilePermissions.fromString("rw-------"));
+            Files.move(boundFile, socketFile, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(boundFile);
+            Files.delete(bindDirectory);
+        }
+    }
+
+    /***
+     * Start the agent, given the path of its socket as the agent's argument. A failure is reported, but never stops
+     * the application from starting: the script falls back to the JDK tools when there is no socket.
+     */
+    public static void premain(String args, Instrumentation instrumentation) {
+        if (args == null || args.isEmpty()) {
+            System.err.println("[daemon-agent] No control socket given, the agent is disabled");
+            return;
+        }
+
+        try {
+            final ControlAgent agent = new ControlAgent(Paths.get(args), new ControlCommands(new Runnable() {
+                @Override
+                public void run() {
+                    System.exit(0);
+                }
+            }));
+            agent.start();
+
+            Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    agent.close();
+                }
+            }, "daemon-agent-shutdown"));
+        } catch (IOException | RuntimeException ex) {
+            System.err.println("[daemon-agent] Could not open the control socket " + args + ": " + ex);
+        }
+    }
+
+    void start() {
+        Thread thread = new Thread(this, "daemon-agent");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @Override
+    public void run() {
+        while (server.isOpen()) {
+            String request = null;
+            try (SocketChannel client = server.accept()) {
+                request = readRequest(client);
+                write(client, commands.handle(request));
+            } catch (ClosedChannelException ex) {
+                return;
+            } catch (IOException ex) {
+                // The client went away, the next one may fare better
+            }
+
+            // Only once the client has its answer, as the JVM may be gone before it could be written
+            if (ControlCommands.SHUTDOWN.equals(request)) {
+                commands.shutdown();
+            }
+        }
+    }
+
+    /***
+     * Stop serving requests and remove the socket, unless another JVM has since bound a socket of its own in its place,
+     * as the new JVM of a reload does whilst the old one is draining
+     */
+    void close() {
+        try {
+            server.close();
+            if (Files.exists(socketFile) && socketKey != null
+                    && socketKey.equals(Files.readAttributes(socketFile, BasicFileAttributes.class).fileKey())) {
+                Files.delete(socketFile);
+            }
+        } catch (IOException ex) {
+            // Leave it be, the next start removes it
+        }
+    }
+
+    private static String readRequest(SocketChannel client) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(MAX_REQUEST_LENGTH);
+        while (buffer.hasRemaining() && client.read(buffer) != -1) {
+            if (buffer.position() > 0 && buffer.get(buffer.position() - 1) == '\n') {
+                break;
+            }
+        }
+        return new String(buffer.array(), 0, buffer.position(), StandardCharsets.UTF_8).trim();
+    }
+
+    private static void write(SocketChannel client, String response) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(response.getBytes(StandardCharsets.UTF_8));
+        while (buffer.hasRemaining()) {
+            client.write(buffer);
+        }
+    }
+}
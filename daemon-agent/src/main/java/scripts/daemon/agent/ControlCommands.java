@@ -0,0 +1,211 @@
+package scripts.daemon.agent;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.LockInfo;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryUsage;
+import java.lang.management.MonitorInfo;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+import java.util.Locale;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/***
+ * The requests that the control agent answers. Figures are written as "name value" lines, as the daemon script's own
+ * metrics are, such that the script can pass them on as they are.
+ * <p />
+ *
+ * <ul>
+ *     <li><code>status</code> - the PID, uptime, threads, heap and classes</li>
+ *     <li><code>thread-dump</code> - the stacks of every thread, with the locks they hold, as jstack -l prints them</li>
+ *     <li><code>heap-histo</code> - the classes taking up the heap, after a full GC, as jcmd GC.class_histogram
+ *     prints them</li>
+ *     <li><code>gc-stats</code> - the count and time of each collector, and the use of each memory pool</li>
+ *     <li><code>shutdown</code> - exit the JVM, running its shutdown hooks, once the reply has been sent</li>
+ * </ul>
+ */
+final class ControlCommands {
+
+    static final String STATUS = "status";
+    static final String THREAD_DUMP = "thread-dump";
+    static final String HEAP_HISTO = "heap-histo";
+    static final String GC_STATS = "gc-stats";
+    static final String SHUTDOWN = "shutdown";
+
+    /** The diagnostic commands that jcmd runs, which are also reachable from inside the JVM */
+    private static final String DIAGNOSTIC_COMMAND = "com.sun.management:type=DiagnosticCommand";
+
+    private final Runnable shutdownAction;
+
+    /***
+     * @param shutdownAction What the shutdown request does, i.e. System.exit
+     */
+    ControlCommands(Runnable shutdownAction) {
+        this.shutdownAction = shutdownAction;
+    }
+
+    /***
+     * Answer a request
+     *
+     * @param request The request, e.g. status
+     * @return The reply, starting with a line of "ok" or "error &lt;reason&gt;"
+     */
+    String handle(String request) {
+        try {
+            switch (request) {
+                case STATUS:
+                    return ok(status());
+                case THREAD_DUMP:
+                    return ok(threadDump());
+                case HEAP_HISTO:
+                    return ok(diagnosticCommand("gcClassHistogram"));
+                case GC_STATS:
+                    return ok(gcStats());
+                case SHUTDOWN:
+                    return ok("");
+                default:
+                    return error("unknown request '" + request + "', expected one of " + STATUS + ", " + THREAD_DUMP
+                        + ", " + HEAP_HISTO + ", " + GC_STATS + " or " + SHUTDOWN);
+            }
+        } catch (JMException | RuntimeException ex) {
+            return error(ex.toString());
+        }
+    }
+
+    /***
+     * Exit the JVM from a thread of its own, such that the agent's thread is free to finish up
+     */
+    void shutdown() {
+        new Thread(shutdownAction, "daemon-agent-exit").start();
+    }
+
+    private static String status() {
+        MemoryUsage heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+
+        StringBuilder status = new StringBuilder();
+        line(status, "pid", ProcessHandle.current().pid());
+        line(status, "uptime_seconds", ManagementFactory.getRuntimeMXBean().getUptime() / 1000.0);
+        line(status, "threads", threads.getThreadCount());
+        line(status, "threads_daemon", threads.getDaemonThreadCount());
+        line(status, "heap_used_bytes", heap.getUsed());
+        line(status, "heap_committed_bytes", heap.getCommitted());
+        line(status, "heap_max_bytes", heap.getMax());
+        line(status, "classes_loaded", ManagementFactory.getClassLoadingMXBean().getLoadedClassCount());
+        return status.toString();
+    }
+
+    private static String gcStats() {
+        StringBuilder stats = new StringBuilder();
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            String name = "gc_" + toMetricName(collector.getName());
+            line(stats, name + "_count", collector.getCollectionCount());
+            line(stats, name + "_seconds", collector.getCollectionTime() / 1000.0);
+        }
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            String name = "pool_" + toMetricName(pool.getName());
+            MemoryUsage usage = pool.getUsage();
+            line(stats, name + "_used_bytes", usage.getUsed());
+            line(stats, name + "_committed_bytes", usage.getCommitted());
+            if (usage.getMax() >= 0) {
+                line(stats, name + "_max_bytes", usage.getMax());
+            }
+        }
+        return stats.toString();
+    }
+
+    /***
+     * The thread dump as jstack -l prints it. Should the diagnostic commands not be available (they are part of the
+     * jdk.management module, which a linked runtime may leave out), the dump is put together from the thread MXBean.
+     */
+    private static String threadDump() throws JMException {
+        if (hasDiagnosticCommands()) {
+            return diagnosticCommand("threadPrint", "-l");
+        }
+
+        StringBuilder dump = new StringBuilder();
+        for (ThreadInfo thread : ManagementFactory.getThreadMXBean().dumpAllThreads(true, true)) {
+            appendThread(dump, thread);
+        }
+        return dump.toString();
+    }
+
+    /***
+     * Write a thread as jstack does. ThreadInfo's own toString cuts the stack short at 8 frames.
+     */
+    private static void appendThread(StringBuilder dump, ThreadInfo thread) {
+        dump.append('"').append(thread.getThreadName()).append("\" #").append(thread.getThreadId());
+        if (thread.isDaemon()) {
+            dump.append(" daemon");
+        }
+        dump.append(" prio=").append(thread.getPriority()).append('\n');
+        dump.append("   java.lang.Thread.State: ").append(thread.getThreadState()).append('\n');
+
+        StackTraceElement[] stack = thread.getStackTrace();
+        MonitorInfo[] monitors = thread.getLockedMonitors();
+        for (int depth = 0; depth < stack.length; depth++) {
+            dump.append("\tat ").append(stack[depth]).append('\n');
+            if (depth == 0 && thread.getLockInfo() != null) {
+                dump.append("\t- waiting on ").append(thread.getLockInfo()).append('\n');
+            }
+            for (MonitorInfo monitor : monitors) {
+                if (monitor.getLockedStackDepth() == depth) {
+                    dump.append("\t- locked ").append(monitor).append('\n');
+                }
+            }
+        }
+
+        LockInfo[] synchronizers = thread.getLockedSynchronizers();
+        dump.append("\n   Locked ownable synchronizers:\n");
+        if (synchronizers.length == 0) {
+            dump.append("\t- None\n");
+        }
+        for (LockInfo synchronizer : synchronizers) {
+            dump.append("\t- ").append(synchronizer).append('\n');
+        }
+        dump.append('\n');
+    }
+
+    private static boolean hasDiagnosticCommands() throws JMException {
+        return ManagementFactory.getPlatformMBeanServer().isRegistered(new ObjectName(DIAGNOSTIC_COMMAND));
+    }
+
+    /***
+     * Run one of jcmd's diagnostic commands, by its operation name, e.g. threadPrint for Thread.print
+     */
+    private static String diagnosticCommand(String operation, String... arguments) throws JMException {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName(DIAGNOSTIC_COMMAND);
+        if (!server.isRegistered(name)) {
+            throw new IllegalStateException("the JVM's diagnostic commands are not available, is jdk.management missing?");
+        }
+        return (String) server.invoke(name, operation, new Object[] { arguments }, new String[] { String[].class.getName() });
+    }
+
+    /***
+     * Turn a collector or pool name into part of a metric name, e.g. "G1 Young Generation" into g1_young_generation
+     */
+    static String toMetricName(String name) {
+        return name.toLowerCase(Locale.ROOT).replaceAll("[^a-z0-9]+", "_").replaceAll("^_|_$", "");
+    }
+
+    private static void line(StringBuilder lines, String name, long value) {
+        lines.append(name).append(' ').append(value).append('\n');
+    }
+
+    private static void line(StringBuilder lines, String name, double value) {
+        lines.append(name).append(' ').append(String.format(Locale.ROOT, "%.3f", value)).append('\n');
+    }
+
+    private static String ok(String body) {
+        return "ok\n" + body;
+    }
+
+    private static String error(String reason) {
+        return "error " + reason.replace('\n', ' ') + "\n";
+    }
+}
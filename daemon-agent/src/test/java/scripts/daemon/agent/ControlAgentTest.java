@@ -0,0 +1,141 @@
+package scripts.daemon.agent;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/***
+ * The agent answers each request on its own connection, and only shuts down once the client has its answer
+ */
+public class ControlAgentTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final CountDownLatch shutdown = new CountDownLatch(1);
+
+    private Path socketFile;
+    private ControlAgent agent;
+
+    @Before
+    public void startAgent() throws IOException {
+        socketFile = folder.getRoot().toPath().resolve("control.sock");
+        agent = new ControlAgent(socketFile, new ControlCommands(new Runnable() {
+            @Override
+            public void run() {
+                shutdown.countDown();
+            }
+        }));
+        agent.start();
+    }
+
+    @After
+    public void stopAgent() {
+        agent.close();
+    }
+
+    @Test
+    public void answersStatusWithThisJvm() throws Exception {
+        String reply = request(ControlCommands.STATUS);
+
+        assertTrue(reply, reply.startsWith("ok\n"));
+        assertTrue(reply, reply.contains("\npid " + ProcessHandle.current().pid() + "\n"));
+        assertTrue(reply, reply.contains("\nheap_used_bytes "));
+    }
+
+    @Test
+    public void dumpsEveryThreadInFull() throws Exception {
+        String reply = request(ControlCommands.THREAD_DUMP);
+
+        assertTrue(reply, reply.startsWith("ok\n"));
+        assertTrue(reply, reply.contains("\"daemon-agent\""));
+        assertTrue(reply, reply.contains("ControlCommands.threadDump"));
+    }
+
+    @Test
+    public void rejectsUnknownRequests() throws Exception {
+        assertTrue(request("jstack").startsWith("error unknown request 'jstack'"));
+    }
+
+    @Test
+    public void shutsDownAfterReplying() throws Exception {
+        assertEquals("ok\n", request(ControlCommands.SHUTDOWN));
+        assertTrue("Shutdown should follow the reply", shutdown.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void onlyLetsItsOwnUserConnect() throws Exception {
+        assertEquals(PosixFilePermissions.fromString("rw-------"), Files.getPosixFilePermissions(socketFile));
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(folder.getRoot().toPath())) {
+            for (Path file : files) {
+                assertEquals("Nothing but the socket should be left", socketFile, file);
+            }
+        }
+    }
+
+    @Test
+    public void removesTheSocketWhenClosed() {
+        assertTrue(Files.exists(socketFile));
+        agent.close();
+        assertFalse(Files.exists(socketFile));
+    }
+
+    @Test
+    public void leavesTheSocketOfTheAgentThatReplacedIt() throws Exception {
+        ControlAgent replacement = new ControlAgent(socketFile, new ControlCommands(new Runnable() {
+            @Override
+            public void run() {
+            }
+        }));
+        replacement.start();
+        try {
+            agent.close();
+            assertTrue("The replacement's socket should be left in place", Files.exists(socketFile));
+            assertTrue(request(ControlCommands.STATUS).startsWith("ok\n"));
+        } finally {
+            replacement.close();
+        }
+        assertFalse(Files.exists(socketFile));
+    }
+
+    @Test
+    public void namesMetricsAfterCollectors() {
+        assertEquals("g1_young_generation", ControlCommands.toMetricName("G1 Young Generation"));
+        assertEquals("ps_marksweep", ControlCommands.toMetricName("PS MarkSweep"));
+    }
+
+    private String request(String request) throws IOException {
+        try (SocketChannel channel = SocketChannel.open(StandardProtocolFamily.UNIX)) {
+            channel.connect(UnixDomainSocketAddress.of(socketFile));
+            channel.write(ByteBuffer.wrap((request + "\n").getBytes(StandardCharsets.UTF_8)));
+
+            ByteArrayOutputStream reply = new ByteArrayOutputStream();
+            ByteBuffer buffer = ByteBuffer.allocate(8192);
+            while (channel.read(buffer) != -1) {
+                reply.write(buffer.array(), 0, buffer.position());
+                buffer.clear();
+            }
+            return new String(reply.toByteArray(), StandardCharsets.UTF_8);
+        }
+    }
+}
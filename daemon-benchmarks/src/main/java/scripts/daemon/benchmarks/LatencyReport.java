@@ -0,0 +1,213 @@
+package scripts.daemon.benchmarks;
+
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/***
+ * The latencies measured for each operation, e.g. <code>java.start</code>, written as JSON and compared against the
+ * report of an earlier run.
+ * <p />
+ *
+ * Operations are compared on their medians, which are far less sensitive to the odd slow run on a shared machine
+ * than the mean. A median only counts as a regression if it has grown both by more than the threshold fraction and by
+ * more than {@link #MIN_REGRESSION_MILLIS}, so that fast operations do not fail on a millisecond of noise.
+ * <p />
+ *
+ * The scores of JMH benchmarks can be recorded alongside, from JMH's JSON results, as an operation named
+ * <code>generation.&lt;benchmark&gt;</code> with the score as its one sample. They take far less than a millisecond,
+ * so rather than {@link #MIN_REGRESSION_MILLIS}, their noise floor is the error JMH gives for the score.
+ */
+public final class LatencyReport {
+
+    /** The least growth in a median, in milliseconds, that can count as a regression */
+    static final double MIN_REGRESSION_MILLIS = 5.0;
+
+    /** Finds each operation's median in a report written by {@link #toJson} */
+    private static final Pattern MEDIAN = Pattern.compile("\"([^\"]+)\"\\s*:\\s*\\{[^{}]*\"median_ms\"\\s*:\\s*([0-9.]+)");
+
+    /** Finds each benchmark's score, its error (which is NaN when there were too few iterations) and unit */
+    private static final Pattern JMH_SCORE = Pattern.compile("\"benchmark\"\\s*:\\s*\"(?:[^\"]*\\.)?([^\".]+)\".*?"
+        + "\"primaryMetric\"\\s*:\\s*\\{\\s*\"score\"\\s*:\\s*([0-9.eE+-]+)\\s*,\\s*\"scoreError\"\\s*:\\s*\"?([0-9.eE+-]+|NaN)\"?"
+        + ".*?\"scoreUnit\"\\s*:\\s*\"([a-z]+)/op\"", Pattern.DOTALL);
+
+    private final Map<String, List<Long>> samples = new TreeMap<>();
+
+    /** The noise floor of the operations whose own is not {@link #MIN_REGRESSION_MILLIS}, in milliseconds */
+    private final Map<String, Double> noiseFloors = new TreeMap<>();
+
+    /***
+     * Record one measurement of an operation
+     *
+     * @param operation The operation, e.g. java.start
+     * @param nanos The time it took
+     */
+    public void record(String operation, long nanos) {
+        List<Long> operationSamples = samples.get(operation);
+        if (operationSamples == null) {
+            operationSamples = new ArrayList<>();
+            samples.put(operation, operationSamples);
+        }
+        operationSamples.add(nanos);
+    }
+
+    /***
+     * Record the score of each benchmark in JMH's JSON results, which must be in a time per operation
+     *
+     * @param json The results, as written by <code>-rf json</code>
+     */
+    public void recordJmhScores(String json) {
+        Matcher matcher = JMH_SCORE.matcher(json);
+        while (matcher.find()) {
+            String operation = "generation." + matcher.group(1);
+            double millisPerUnit = millisPerUnit(matcher.group(4));
+            double error = Double.parseDouble(matcher.group(3));
+
+            record(operation, Math.round(Double.parseDouble(matcher.group(2)) * millisPerUnit
+                * TimeUnit.MILLISECONDS.toNanos(1)));
+            noiseFloors.put(operation, Double.isNaN(error) ? 0.0 : error * millisPerUnit);
+        }
+    }
+
+    /***
+     * @return The median of each operation, in milliseconds
+     */
+    public Map<String, Double> medians() {
+        Map<String, Double> medians = new TreeMap<>();
+        for (Map.Entry<String, List<Long>> entry : samples.entrySet()) {
+            medians.put(entry.getKey(), percentile(sorted(entry.getValue()), 50));
+        }
+        return medians;
+    }
+
+    /***
+     * Compare this run against an earlier one. Operations missing from either run are not compared.
+     *
+     * @param baseline The medians of the earlier run, in milliseconds
+     * @param threshold The fraction by which a median may grow before it is a regression, e.g. 0.2
+     * @return A description of each regression, empty if there are none
+     */
+    public List<String> regressionsAgainst(Map<String, Double> baseline, double threshold) {
+        List<String> regressions = new ArrayList<>();
+        for (Map.Entry<String, Double> entry : medians().entrySet()) {
+            Double previous = baseline.get(entry.getKey());
+            if (previous == null) {
+                continue;
+            }
+
+            double current = entry.getValue();
+            Double noiseFloor = noiseFloors.get(entry.getKey());
+            if (current > previous * (1 + threshold)
+                    && current - previous > (noiseFloor == null ? MIN_REGRESSION_MILLIS : noiseFloor)) {
+                // Benchmark scores are a fraction of a millisecond
+                String format = noiseFloor == null ? "%s: median %.1fms is %.0f%% over the baseline's %.1fms"
+                    : "%s: median %.4fms is %.0f%% over the baseline's %.4fms";
+                regressions.add(String.format(Locale.ROOT, format,
+                    entry.getKey(), current, (current / previous - 1) * 100, previous));
+            }
+        }
+        return regressions;
+    }
+
+    /***
+     * Read the medians out of a report written by {@link #toJson}
+     *
+     * @param json The report
+     * @return The median of each operation, in milliseconds
+     */
+    public static Map<String, Double> parseMedians(String json) {
+        Map<String, Double> medians = new TreeMap<>();
+        Matcher matcher = MEDIAN.matcher(json);
+        while (matcher.find()) {
+            medians.put(matcher.group(1), Double.valueOf(matcher.group(2)));
+        }
+        return medians;
+    }
+
+    /***
+     * @param threshold The threshold the run was compared with
+     * @param regressions The regressions found, if the run was compared against a baseline
+     * @return The report as JSON
+     */
+    public String toJson(double threshold, List<String> regressions) {
+        SimpleDateFormat timestamp = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss'Z'", Locale.ROOT);
+        timestamp.setTimeZone(TimeZone.getTimeZone("UTC"));
+
+        StringBuilder json = new StringBuilder();
+        json.append("{\n");
+        json.append("  \"generated\": \"").append(timestamp.format(new Date())).append("\",\n");
+        json.append("  \"threshold\": ").append(String.format(Locale.ROOT, "%.2f", threshold)).append(",\n");
+        json.append("  \"results\": {");
+
+        String separator = "\n";
+        for (Map.Entry<String, List<Long>> entry : samples.entrySet()) {
+            double[] sorted = sorted(entry.getValue());
+            json.append(separator).append(String.format(Locale.ROOT,
+                "    \"%s\": { \"samples\": %d, \"min_ms\": %.6f, \"median_ms\": %.6f, \"p90_ms\": %.6f, \"max_ms\": %.6f }",
+                entry.getKey(), sorted.length, sorted[0], percentile(sorted, 50), percentile(sorted, 90),
+                sorted[sorted.length - 1]));
+            separator = ",\n";
+        }
+
+        json.append("\n  },\n");
+        json.append("  \"regressions\": [");
+        separator = "\n";
+        for (String regression : regressions) {
+            json.append(separator).append("    \"").append(regression.replace("\\", "\\\\").replace("\"", "\\\"")).append('"');
+            separator = ",\n";
+        }
+        json.append(regressions.isEmpty() ? "]\n" : "\n  ]\n");
+        json.append("}\n");
+        return json.toString();
+    }
+
+    /***
+     * @return The samples in milliseconds, in ascending order
+     */
+    private static double[] sorted(List<Long> nanos) {
+        double[] millis = new double[nanos.size()];
+        for (int index = 0; index < millis.length; index++) {
+            millis[index] = nanos.get(index) / (double) TimeUnit.MILLISECONDS.toNanos(1);
+        }
+        Arrays.sort(millis);
+        return millis;
+    }
+
+    /***
+     * @return The milliseconds in one of a JMH score's time units, e.g. us
+     */
+    private static double millisPerUnit(String unit) {
+        switch (unit) {
+            case "s":
+                return 1000.0;
+            case "ms":
+                return 1.0;
+            case "us":
+                return 0.001;
+            case "ns":
+                return 0.000001;
+            default:
+                throw new IllegalArgumentException("JMH scores in " + unit + "/op cannot be compared as latencies");
+        }
+    }
+
+    /***
+     * The nearest-rank percentile of sorted samples, or the mean of the middle two for the median of an even count
+     */
+    private static double percentile(double[] sorted, int percent) {
+        if (percent == 50 && sorted.length % 2 == 0) {
+            return (sorted[sorted.length / 2 - 1] + sorted[sorted.length / 2]) / 2;
+        }
+        int rank = (int) Math.ceil(percent / 100.0 * sorted.length);
+        return sorted[Math.max(rank, 1) - 1];
+    }
+}
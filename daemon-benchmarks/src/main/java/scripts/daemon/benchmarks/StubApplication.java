@@ -0,0 +1,27 @@
+package scripts.daemon.benchmarks;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+/***
+ * The JAVA application that the lifecycle benchmark starts and stops. It does nothing but signal that it is ready,
+ * through the ready-file the daemon script hands it, and wait to be stopped. The time measured is therefore the daemon
+ * script's own, plus the JVM's startup.
+ */
+public final class StubApplication {
+
+    private StubApplication() {
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        String readyFile = System.getenv("DAEMON_READY_FILE");
+        if (readyFile != null && !readyFile.isEmpty()) {
+            Files.createFile(Paths.get(readyFile));
+        }
+
+        while (true) {
+            Thread.sleep(Long.MAX_VALUE);
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package scripts.daemon.plugin.maven;
+
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/***
+ * The cost of generating a daemon, as paid by every module of a build that uses the plugin.
+ * <p />
+ *
+ * <ul>
+ *     <li>{@link #extractCommonScripts} - inflating the bundled common scripts, which the cache pays once per build</li>
+ *     <li>{@link #processArguments} - normalising the arguments given in the POM</li>
+ *     <li>{@link #generateFresh} - generating into an empty directory, e.g. after mvn clean</li>
+ *     <li>{@link #generateChangedConfig} - regenerating after a parameter has changed, which rewrites only the config</li>
+ *     <li>{@link #generateUpToDate} - regenerating an unchanged module, which should do next to nothing</li>
+ * </ul>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GenerationBenchmark {
+
+    private static final String COMMON_SCRIPTS = "/scripts-bundled/common-scripts.zip";
+
+    /** JVM arguments as they are typically laid out in a POM, over several indented lines */
+    private static final String POM_ARGUMENTS = "\n            -Xms512m -Xmx512m\n"
+        + "            -XX:+UseG1GC   -XX:MaxGCPauseMillis=100\n"
+        + "            -Dlogback.configurationFile=conf/logback.xml -Dapp.environment=production\n        ";
+
+    private byte[] commonScriptsZip;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        commonScriptsZip = BundledScripts.read(COMMON_SCRIPTS);
+    }
+
+    /***
+     * The directory a benchmark generates into
+     */
+    @State(Scope.Thread)
+    public static class Output {
+        Path directory;
+        int generation;
+
+        @Setup(Level.Trial)
+        public void create() throws IOException {
+            directory = Files.createTempDirectory("daemon-benchmark");
+        }
+
+        @TearDown(Level.Trial)
+        public void remove() throws IOException {
+            delete(directory);
+        }
+    }
+
+    /***
+     * A directory that is emptied before each call, as if by mvn clean. It is emptied in place, as it is not the cost
+     * of creating a directory that is being measured.
+     */
+    @State(Scope.Thread)
+    public static class EmptyOutput extends Output {
+
+        @Setup(Level.Invocation)
+        public void empty() throws IOException {
+            delete(directory);
+            Files.createDirectories(directory);
+        }
+    }
+
+    @Benchmark
+    public Map<String, byte[]> extractCommonScripts() throws IOException {
+        return BundledScripts.inflate(commonScriptsZip);
+    }
+
+    @Benchmark
+    public String processArguments() throws MojoFailureException {
+        return DaemonGenerator.processArguments(POM_ARGUMENTS);
+    }
+
+    @Benchmark
+    public void generateFresh(EmptyOutput output) throws MojoFailureException {
+        generator(output.directory, "-Xmx512m").generate();
+    }
+
+    @Benchmark
+    public void generateChangedConfig(Output output) throws MojoFailureException {
+        generator(output.directory, (output.generation++ % 2 == 0) ? "-Xmx512m" : "-Xmx1g").generate();
+    }
+
+    @Benchmark
+    public void generateUpToDate(Output output) throws MojoFailureException {
+        generator(output.directory, "-Xmx512m").generate();
+    }
+
+    private static DaemonGenerator generator(Path outputDirectory, String jvmArgs) {
+        DaemonDefinition definition = new DaemonDefinition();
+        definition.setApplicationName("Benchmark Daemon");
+        definition.setScriptName("benchmark-daemon");
+        definition.setAppType(ApplicationType.JAVA.toString());
+        definition.setJavaHome("/opt/java");
+        definition.setMainMethod("com.example.Main");
+        definition.setJvmArgs(jvmArgs);
+        return new DaemonGenerator(definition, outputDirectory, null, QuietLog.INSTANCE);
+    }
+
+    static void delete(Path directory) throws IOException {
+        if (Files.notExists(directory)) {
+            return;
+        }
+
+        Files.walkFileTree(directory, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) throws IOException {
+                Files.delete(file);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path dir, IOException ex) throws IOException {
+                Files.delete(dir);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    /***
+     * Keeps the generator's progress messages out of the benchmark's output (and its timings). Warnings and errors
+     * still get through.
+     */
+    static final class QuietLog extends SystemStreamLog {
+
+        static final QuietLog INSTANCE = new QuietLog();
+
+        @Override
+        public void info(CharSequence content) {
+        }
+
+        @Override
+        public void debug(CharSequence content) {
+        }
+    }
+}
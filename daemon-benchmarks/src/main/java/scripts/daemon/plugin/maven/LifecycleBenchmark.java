@@ -0,0 +1,229 @@
+package scripts.daemon.plugin.maven;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.maven.plugin.MojoFailureException;
+
+import scripts.daemon.benchmarks.LatencyReport;
+import scripts.daemon.benchmarks.StubApplication;
+
+/***
+ * Times the commands of generated daemon scripts, the latency that an operator (or a deployment across a fleet)
+ * actually waits on. A daemon is generated for a stub JAVA application and a stub EXECUTABLE, each of which becomes
+ * ready as soon as it has started, and each iteration then times:
+ * <p />
+ *
+ * <ul>
+ *     <li><code>start</code> - until the application is ready, through a readiness file</li>
+ *     <li><code>status</code></li>
+ *     <li><code>restart</code> - until the new process is ready</li>
+ *     <li><code>stop</code> - until the process has exited</li>
+ * </ul>
+ *
+ * The results are written as JSON, together with the scores of the JMH benchmarks if their results are given. Given
+ * the results of an earlier run, the medians and scores are compared against them and the harness exits non-zero if
+ * any have regressed by more than the threshold, failing the build.
+ * <p />
+ *
+ * Usage: LifecycleBenchmark --work-dir &lt;dir&gt; --output &lt;file&gt; [--iterations N] [--warmup N]
+ * [--threshold FRACTION] [--baseline &lt;file&gt;] [--jmh-results &lt;file&gt;]
+ */
+public final class LifecycleBenchmark {
+
+    private static final List<String> COMMANDS = Arrays.asList("start", "status", "restart", "stop");
+
+    /** The readiness file, relative to the daemon's base directory */
+    private static final String READY_FILE = "var/ready";
+
+    /** The longest any one command may take before the run is abandoned */
+    private static final long COMMAND_TIMEOUT_SECONDS = 120;
+
+    private final Path workDirectory;
+
+    private LifecycleBenchmark(Path workDirectory) {
+        this.workDirectory = workDirectory;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Path workDirectory = null;
+        Path output = null;
+        Path baseline = null;
+        Path jmhResults = null;
+        int iterations = 10;
+        int warmup = 2;
+        double threshold = 0.2;
+
+        for (int index = 0; index + 1 < args.length; index += 2) {
+            String value = args[index + 1];
+            switch (args[index]) {
+                case "--work-dir":
+                    workDirectory = Paths.get(value);
+                    break;
+                case "--output":
+                    output = Paths.get(value);
+                    break;
+                case "--baseline":
+                    baseline = value.trim().isEmpty() ? null : Paths.get(value);
+                    break;
+                case "--jmh-results":
+                    jmhResults = value.trim().isEmpty() ? null : Paths.get(value);
+                    break;
+                case "--iterations":
+                    iterations = Integer.parseInt(value);
+                    break;
+                case "--warmup":
+                    warmup = Integer.parseInt(value);
+                    break;
+                case "--threshold":
+                    threshold = Double.parseDouble(value);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option " + args[index]);
+            }
+        }
+
+        if (workDirectory == null || output == null) {
+            throw new IllegalArgumentException("Usage: LifecycleBenchmark --work-dir <dir> --output <file> [--iterations N]"
+                + " [--warmup N] [--threshold FRACTION] [--baseline <file>] [--jmh-results <file>]");
+        }
+
+        LifecycleBenchmark benchmark = new LifecycleBenchmark(workDirectory.toAbsolutePath());
+        LatencyReport report = new LatencyReport();
+        for (ApplicationType appType : ApplicationType.values()) {
+            benchmark.run(appType, warmup, iterations, report);
+        }
+        if (jmhResults != null) {
+            report.recordJmhScores(new String(Files.readAllBytes(jmhResults), StandardCharsets.UTF_8));
+        }
+
+        List<String> regressions = Collections.emptyList();
+        if (baseline != null) {
+            String previous = new String(Files.readAllBytes(baseline), StandardCharsets.UTF_8);
+            regressions = report.regressionsAgainst(LatencyReport.parseMedians(previous), threshold);
+        }
+
+        String json = report.toJson(threshold, regressions);
+        Files.createDirectories(output.toAbsolutePath().getParent());
+        Files.write(output, json.getBytes(StandardCharsets.UTF_8));
+        System.out.print(json);
+
+        if (!regressions.isEmpty()) {
+            System.err.println(String.format("%d operations regressed by more than %.0f%% against %s",
+                regressions.size(), threshold * 100, baseline));
+            System.exit(1);
+        }
+    }
+
+    /***
+     * Generate a daemon for the application type, then time its commands
+     */
+    private void run(ApplicationType appType, int warmup, int iterations, LatencyReport report) throws Exception {
+        Path baseDirectory = workDirectory.resolve(appType.toString().toLowerCase());
+        String script = install(appType, baseDirectory);
+
+        try {
+            for (int iteration = 0; iteration < warmup + iterations; iteration++) {
+                for (String command : COMMANDS) {
+                    long nanos = time(baseDirectory, script, command);
+                    if (iteration >= warmup) {
+                        report.record(appType.toString().toLowerCase() + "." + command, nanos);
+                    }
+                }
+            }
+        } finally {
+            // Never leave a stub running if a command failed part way through
+            runScript(baseDirectory, script, "stop");
+        }
+    }
+
+    /***
+     * Lay out a daemon the way a project's assembly would: the generated scripts in bin, and an (empty) lib
+     *
+     * @return The path of the daemon script
+     */
+    private static String install(ApplicationType appType, Path baseDirectory) throws IOException, MojoFailureException {
+        GenerationBenchmark.delete(baseDirectory);
+        Path binDirectory = baseDirectory.resolve("bin");
+        Files.createDirectories(binDirectory);
+        Files.createDirectories(baseDirectory.resolve("lib"));
+
+        DaemonDefinition definition = new DaemonDefinition();
+        definition.setApplicationName("Lifecycle " + appType);
+        definition.setScriptName("daemon");
+        definition.setAppType(appType.toString());
+        definition.setReadinessFile(READY_FILE);
+
+        switch (appType) {
+            case JAVA:
+                definition.setJavaHome(System.getProperty("java.home"));
+                definition.setMainMethod(StubApplication.class.getName());
+                definition.setAdditionalClasspath(new String[] { codeSource() });
+                break;
+            case EXECUTABLE:
+                Path executable = binDirectory.resolve("stub-app");
+                Files.write(executable, ("#! /bin/bash\n"
+                    + "[[ -n ${DAEMON_READY_FILE} ]] && touch ${DAEMON_READY_FILE}\n"
+                    + "exec sleep 2147483647\n").getBytes(StandardCharsets.UTF_8));
+                executable.toFile().setExecutable(true);
+                definition.setExecutableFile(executable.getFileName().toString());
+                break;
+            default:
+                throw new IllegalArgumentException("No stub application for " + appType);
+        }
+
+        new DaemonGenerator(definition, binDirectory, null, GenerationBenchmark.QuietLog.INSTANCE).generate();
+        return binDirectory.resolve(definition.getScriptName()).toString();
+    }
+
+    /***
+     * @return Where the stub application's classes are, to put on the daemon's classpath
+     */
+    private static String codeSource() {
+        try {
+            return new File(StubApplication.class.getProtectionDomain().getCodeSource().getLocation().toURI()).getPath();
+        } catch (URISyntaxException ex) {
+            throw new IllegalStateException("Cannot locate the stub application", ex);
+        }
+    }
+
+    private long time(Path baseDirectory, String script, String command) throws IOException, InterruptedException {
+        long started = System.nanoTime();
+        int exitCode = runScript(baseDirectory, script, command);
+        long nanos = System.nanoTime() - started;
+
+        if (exitCode != 0) {
+            throw new IllegalStateException(String.format("'%s %s' exited with %d, see %s", script, command, exitCode,
+                commandLog(baseDirectory)));
+        }
+        return nanos;
+    }
+
+    private int runScript(Path baseDirectory, String script, String command) throws IOException, InterruptedException {
+        File commandLog = commandLog(baseDirectory).toFile();
+        Process process = new ProcessBuilder("bash", script, command)
+            .redirectErrorStream(true)
+            .redirectOutput(ProcessBuilder.Redirect.appendTo(commandLog))
+            .start();
+
+        if (!process.waitFor(COMMAND_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+            process.destroyForcibly();
+            throw new IllegalStateException(String.format("'%s %s' did not finish within %d seconds", script, command,
+                COMMAND_TIMEOUT_SECONDS));
+        }
+        return process.exitValue();
+    }
+
+    private static Path commandLog(Path baseDirectory) {
+        return baseDirectory.resolve("commands.log");
+    }
+}
@@ -0,0 +1,107 @@
+package scripts.daemon.benchmarks;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+/***
+ * A run must be able to read back the report of an earlier one, and only flag growth beyond the threshold
+ */
+public class LatencyReportTest {
+
+    @Test
+    public void mediansSurviveTheRoundTrip() {
+        LatencyReport report = report("java.start", 100, 300, 200);
+        record(report, "java.stop", 40, 50);
+
+        Map<String, Double> medians = LatencyReport.parseMedians(report.toJson(0.2, Collections.<String>emptyList()));
+
+        assertEquals(2, medians.size());
+        assertEquals(200.0, medians.get("java.start"), 0.001);
+        assertEquals(45.0, medians.get("java.stop"), 0.001);
+    }
+
+    @Test
+    public void flagsOnlyGrowthBeyondTheThreshold() {
+        LatencyReport baseline = report("java.start", 200);
+        record(baseline, "java.status", 20);
+        record(baseline, "java.stop", 100);
+
+        // 30% slower; 30% slower, by just past the noise floor; 10% slower
+        LatencyReport current = report("java.start", 260);
+        record(current, "java.status", 26);
+        record(current, "java.stop", 110);
+
+        List<String> regressions = current.regressionsAgainst(baseline.medians(), 0.2);
+
+        assertEquals(2, regressions.size());
+        assertTrue(regressions.get(0), regressions.get(0).startsWith("java.start: median 260.0ms is 30% over"));
+        assertTrue(regressions.get(1), regressions.get(1).startsWith("java.status:"));
+    }
+
+    @Test
+    public void ignoresGrowthWithinTheNoiseFloor() {
+        LatencyReport baseline = report("executable.status", 10);
+        LatencyReport current = report("executable.status", 14);
+
+        assertTrue(current.regressionsAgainst(baseline.medians(), 0.2).isEmpty());
+    }
+
+    @Test
+    public void comparesJmhScoresWithinTheirError() {
+        LatencyReport baseline = new LatencyReport();
+        baseline.recordJmhScores(jmhResults(100.0, "5.0", 20.0, "1.0"));
+        LatencyReport current = new LatencyReport();
+        current.recordJmhScores(jmhResults(150.0, "NaN", 24.5, "5.0"));
+
+        Map<String, Double> medians = LatencyReport.parseMedians(baseline.toJson(0.2, Collections.<String>emptyList()));
+        assertEquals(0.1, medians.get("generation.generateFresh"), 0.0001);
+
+        // 50% slower, with no error to forgive it; 22% slower, but by less than the score's error
+        List<String> regressions = current.regressionsAgainst(medians, 0.2);
+
+        assertEquals(1, regressions.size());
+        assertTrue(regressions.get(0), regressions.get(0).startsWith("generation.generateFresh: median 0.1500ms is 50% over"));
+    }
+
+    private static String jmhResults(double freshScore, String freshError, double upToDateScore, String upToDateError) {
+        return String.format(Locale.ROOT, "[%n%s,%n%s%n]%n",
+            jmhResult("generateFresh", freshScore, freshError), jmhResult("generateUpToDate", upToDateScore, upToDateError));
+    }
+
+    private static String jmhResult(String method, double score, String error) {
+        return String.format(Locale.ROOT, "    {%n"
+            + "        \"jmhVersion\" : \"1.37\",%n"
+            + "        \"benchmark\" : \"scripts.daemon.plugin.maven.GenerationBenchmark.%s\",%n"
+            + "        \"mode\" : \"avgt\",%n"
+            + "        \"primaryMetric\" : {%n"
+            + "            \"score\" : %s,%n"
+            + "            \"scoreError\" : %s,%n"
+            + "            \"scoreConfidence\" : [ 1.0, 2.0 ],%n"
+            + "            \"scoreUnit\" : \"us/op\",%n"
+            + "            \"rawData\" : [ [ 1.0, 2.0 ] ]%n"
+            + "        },%n"
+            + "        \"secondaryMetrics\" : {%n"
+            + "        }%n"
+            + "    }", method, score, "NaN".equals(error) ? "\"NaN\"" : error);
+    }
+
+    private static LatencyReport report(String operation, long... millis) {
+        LatencyReport report = new LatencyReport();
+        record(report, operation, millis);
+        return report;
+    }
+
+    private static void record(LatencyReport report, String operation, long... millis) {
+        for (long sample : millis) {
+            report.record(operation, TimeUnit.MILLISECONDS.toNanos(sample));
+        }
+    }
+}
@@ -1,8 +1,10 @@
 #! /bin/bash
 
-SOURCEDIR=`dirname "${BASH_SOURCE[0]}"`
+SOURCEDIR="${BASH_SOURCE[0]%/*}"
 
-source "${SOURCEDIR}/colors.sh"
+source "${SOURCEDIR}/colors.sh" # @inline common/colors.sh
+source "${SOURCEDIR}/process.sh" # @inline common/process.sh
+source "${SOURCEDIR}/host.sh" # @inline common/host.sh
 
 ########################################################################
 ### Logging 
@@ -32,7 +34,7 @@ function showSuccess() {
 #
 function debug(){ 
 	if [[ ! -z ${DEBUG} ]]; then
-		showDebug $*
+		showDebug $* >&2
 	fi
 }
 
@@ -0,0 +1,147 @@
+#! /bin/bash
+
+########################################################################
+### Host Inspection
+##
+## Reads the resources available to this host (or container) out of /proc and /sys, so that an application can be
+## sized at launch for the machine it actually runs on. Container limits are honoured for both cgroup v1 and v2.
+##
+
+###
+# Echo the path of a cgroup controller's directory for this process, or nothing if it cannot be found. On cgroup v2
+# all of the controllers share the one (unified) directory.
+#
+# ARG 1: The cgroup v1 controller, e.g. memory or cpu
+#
+function cgroupDir() {
+	local LINE HIERARCHY CONTROLLERS CGROUP_PATH
+	if [[ -f /sys/fs/cgroup/cgroup.controllers ]]; then
+		while IFS=: read -r HIERARCHY CONTROLLERS CGROUP_PATH; do
+			if [[ ${HIERARCHY} == "0" ]] && [[ -d /sys/fs/cgroup${CGROUP_PATH} ]]; then
+				echo "/sys/fs/cgroup${CGROUP_PATH}"
+				return
+			fi
+		done < /proc/self/cgroup
+		echo "/sys/fs/cgroup"
+		return
+	fi
+
+	while IFS=: read -r HIERARCHY CONTROLLERS CGROUP_PATH; do
+		if [[ ,${CONTROLLERS}, == *,$1,* ]]; then
+			# Within a container the controller is usually mounted at the container's own cgroup
+			if [[ -d /sys/fs/cgroup/$1${CGROUP_PATH} ]]; then
+				echo "/sys/fs/cgroup/$1${CGROUP_PATH}"
+			elif [[ -d /sys/fs/cgroup/$1 ]]; then
+				echo "/sys/fs/cgroup/$1"
+			fi
+			return
+		fi
+	done 2> /dev/null < /proc/self/cgroup
+}
+
+###
+# Echo the number of CPUs in a CPU list, e.g. 4 for "0-2,7"
+#
+# ARG 1: The CPU list, as taskset and /sys take it
+#
+function cpuListSize() {
+	local RANGE RANGES COUNT=0
+	IFS=, read -r -a RANGES <<< "$1"
+	for RANGE in "${RANGES[@]}"; do
+		if [[ ${RANGE} == *-* ]]; then
+			COUNT=$(( COUNT + ${RANGE#*-} - ${RANGE%-*} + 1 ))
+		elif [[ -n ${RANGE} ]]; then
+			COUNT=$(( COUNT + 1 ))
+		fi
+	done
+	echo "${COUNT}"
+}
+
+###
+# Echo the number of CPUs this host offers: the online CPUs, capped by the cgroup's CPU quota (rounded up)
+#
+function hostCpuCount() {
+	local CPUS=`getconf _NPROCESSORS_ONLN 2> /dev/null || echo 1`
+	local DIR=`cgroupDir cpu` QUOTA PERIOD
+
+	if [[ -f ${DIR}/cpu.max ]]; then
+		read -r QUOTA PERIOD < ${DIR}/cpu.max
+	elif [[ -f ${DIR}/cpu.cfs_quota_us ]] && [[ -f ${DIR}/cpu.cfs_period_us ]]; then
+		read -r QUOTA < ${DIR}/cpu.cfs_quota_us
+		read -r PERIOD < ${DIR}/cpu.cfs_period_us
+	fi
+
+	# No quota is "max" on v2 and -1 on v1
+	if [[ ${QUOTA} =~ ^[0-9]+$ ]] && [[ ${PERIOD} -gt 0 ]]; then
+		local LIMIT=$(( (QUOTA + PERIOD - 1) / PERIOD ))
+		if [[ ${LIMIT} -lt ${CPUS} ]]; then
+			CPUS=${LIMIT}
+		fi
+	fi
+
+	if [[ ${CPUS} -lt 1 ]]; then
+		CPUS=1
+	fi
+	echo "${CPUS}"
+}
+
+###
+# Echo a field of /proc/meminfo, in kilobytes, or 0 if it is not present
+#
+# ARG 1: The field, e.g. MemTotal
+#
+function memInfo() {
+	local KEY VALUE UNIT
+	while read -r KEY VALUE UNIT; do
+		if [[ ${KEY} == "$1:" ]]; then
+			echo "${VALUE}"
+			return
+		fi
+	done < /proc/meminfo
+	echo "0"
+}
+
+###
+# Echo the memory this host offers, in megabytes: the physical memory, capped by the cgroup's memory limit
+#
+function hostMemoryMb() {
+	local MEMORY_KB=`memInfo MemTotal`
+	local DIR=`cgroupDir memory` LIMIT=""
+
+	if [[ -f ${DIR}/memory.max ]]; then
+		read -r LIMIT < ${DIR}/memory.max
+	elif [[ -f ${DIR}/memory.limit_in_bytes ]]; then
+		read -r LIMIT < ${DIR}/memory.limit_in_bytes
+	fi
+
+	# No limit is "max" on v2, and a value beyond the physical memory on v1
+	if [[ ${LIMIT} =~ ^[0-9]+$ ]] && [[ ${#LIMIT} -lt 19 ]] && [[ $(( LIMIT / 1024 )) -lt ${MEMORY_KB} ]]; then
+		MEMORY_KB=$(( LIMIT / 1024 ))
+	fi
+	echo "$(( MEMORY_KB / 1024 ))"
+}
+
+###
+# Echo the free memory reserved as explicit large pages (hugetlbfs), in megabytes
+#
+function hostFreeHugePagesMb() {
+	echo "$(( `memInfo HugePages_Free` * `memInfo Hugepagesize` / 1024 ))"
+}
+
+###
+# Echo the mode of transparent huge pages, i.e. always, madvise or never. Echoes never if they are not supported.
+#
+function hostTransparentHugePages() {
+	local MODES MODE
+	if [[ -r /sys/kernel/mm/transparent_hugepage/enabled ]]; then
+		read -r -a MODES < /sys/kernel/mm/transparent_hugepage/enabled
+		for MODE in "${MODES[@]}"; do
+			if [[ ${MODE} == \[*\] ]]; then
+				MODE=${MODE#[}
+				echo "${MODE%]}"
+				return
+			fi
+		done
+	fi
+	echo "never"
+}
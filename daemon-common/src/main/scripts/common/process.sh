@@ -0,0 +1,159 @@
+#! /bin/bash
+
+########################################################################
+### Process Inspection
+##
+## Reads process details straight out of /proc, so that checking on a process never has to fork ps or start a JVM
+## for jps. Only available on Linux; callers should check hasProcFs and fall back to ps/jps elsewhere.
+##
+
+function hasProcFs() {
+	[[ -r /proc/self/stat ]]
+}
+
+###
+# Echo the fields of /proc/<pid>/stat from field 3 (state) onwards. The command name (field 2) is in parentheses and
+# may itself contain spaces or parentheses, so we split after the last closing parenthesis.
+#
+# ARG 1: The PID
+#
+function procStatFields() {
+	local STAT
+	read -r STAT < /proc/$1/stat || return 1
+	echo "${STAT##*) }"
+}
+
+###
+# Echo the start time of a process, in clock ticks since boot. Together with the PID this identifies a process
+# uniquely, as a reused PID will always have a later start time.
+#
+# ARG 1: The PID
+#
+function procStartTime() {
+	local FIELDS
+	FIELDS=( `procStatFields $1 2> /dev/null` ) || return 1
+	# FIELDS[0] is field 3 (state), so field 22 (starttime) is at index 19
+	echo "${FIELDS[19]}"
+}
+
+###
+# Echo the state of a process, e.g. R (running), S (sleeping) or Z (zombie)
+#
+# ARG 1: The PID
+#
+function procState() {
+	local FIELDS
+	FIELDS=( `procStatFields $1 2> /dev/null` ) || return 1
+	echo "${FIELDS[0]}"
+}
+
+###
+# Echo the command line of a process, with its arguments separated by spaces
+#
+# ARG 1: The PID
+#
+function procCmdline() {
+	local ARG ARGS=()
+	while IFS= read -r -d '' ARG; do
+		ARGS+=( "${ARG}" )
+	done < /proc/$1/cmdline || return 1
+	echo "${ARGS[*]}"
+}
+
+###
+# Check that a process is alive, and that it is the process we expect it to be
+#
+# ARG 1: The PID
+# ARG 2: (Optional) The start time recorded when the process was forked
+# ARG 3: (Optional) A fingerprint that the process' command line must contain
+#
+function isProcessAlive() {
+	local PID=$1 START=$2 FINGERPRINT=$3
+
+	local STAT FIELDS ARG ARGS=()
+
+	# Read /proc here rather than through procState and friends, which would cost a subshell each
+	if [[ -z ${PID} ]] || ! read -r STAT 2> /dev/null < /proc/${PID}/stat; then
+		return 1
+	fi
+	FIELDS=( ${STAT##*) } )
+
+	if [[ ${FIELDS[0]} == "Z" ]]; then
+		return 1
+	fi
+
+	if [[ -n ${START} ]] && [[ ${FIELDS[19]} != "${START}" ]]; then
+		debug "PID ${PID} has been reused by another process"
+		return 1
+	fi
+
+	if [[ -n ${FINGERPRINT} ]]; then
+		while IFS= read -r -d '' ARG; do
+			ARGS+=( "${ARG}" )
+		done 2> /dev/null < /proc/${PID}/cmdline
+		if [[ "${ARGS[*]}" != *"${FINGERPRINT}"* ]]; then
+			debug "PID ${PID} is not running ${FINGERPRINT}"
+			return 1
+		fi
+	fi
+
+	return 0
+}
+
+###
+# The number of clock ticks per second, which /proc reports times in. Looked up by procMetrics when first needed, as it
+# needs a fork.
+#
+PROC_CLK_TCK=""
+
+###
+# Echo the resource usage of a process as "name value" lines, read from /proc without forking any external
+# commands. Times are in seconds (to the millisecond), memory in bytes.
+#
+#   uptime_seconds, cpu_seconds, rss_bytes, pss_bytes (if the kernel provides smaps_rollup), threads, open_fds
+#
+# ARG 1: The PID
+#
+function procMetrics() {
+	local PID=$1
+	local FIELDS LINE KEY VALUE UNIT UPTIME FDS
+
+	FIELDS=( `procStatFields ${PID} 2> /dev/null` ) || return 1
+
+	if [[ -z ${PROC_CLK_TCK} ]]; then
+		PROC_CLK_TCK=`getconf CLK_TCK 2> /dev/null || echo 100`
+	fi
+
+	# utime and stime (fields 14 and 15) and starttime (field 22), all in clock ticks
+	local CPU_MS=$(( (FIELDS[11] + FIELDS[12]) * 1000 / PROC_CLK_TCK ))
+	local START_MS=$(( FIELDS[19] * 1000 / PROC_CLK_TCK ))
+
+	read -r UPTIME LINE < /proc/uptime
+	local UPTIME_MS=$(( ${UPTIME%.*} * 1000 + 10#${UPTIME#*.} * 10 - START_MS ))
+
+	printf 'uptime_seconds %d.%03d\n' $((UPTIME_MS / 1000)) $((UPTIME_MS % 1000))
+	printf 'cpu_seconds %d.%03d\n' $((CPU_MS / 1000)) $((CPU_MS % 1000))
+
+	while read -r KEY VALUE UNIT; do
+		case ${KEY} in
+			VmRSS: )
+				echo "rss_bytes $((VALUE * 1024))" ;;
+			Threads: )
+				echo "threads ${VALUE}" ;;
+		esac
+	done < /proc/${PID}/status
+
+	if [[ -r /proc/${PID}/smaps_rollup ]]; then
+		while read -r KEY VALUE UNIT; do
+			if [[ ${KEY} == "Pss:" ]]; then
+				echo "pss_bytes $((VALUE * 1024))"
+				break
+			fi
+		done < /proc/${PID}/smaps_rollup
+	fi
+
+	FDS=( /proc/${PID}/fd/* )
+	if [[ -e ${FDS[0]} ]]; then
+		echo "open_fds ${#FDS[@]}"
+	fi
+}
@@ -0,0 +1,114 @@
+package scripts.daemon.logpump;
+
+import java.util.concurrent.TimeUnit;
+
+/***
+ * A bounded, in-memory ring buffer of output lines, between the thread that reads the application's output and the
+ * thread that writes it to disk.
+ * <p />
+ *
+ * The reading side never waits for space: a line that does not fit is dropped and counted instead. Therefore, a slow
+ * or full disk can never leave the application blocked on a full pipe. The writing side drains whatever has
+ * accumulated in a single batch, so the busier the application, the larger (and fewer) the writes.
+ */
+final class LineBuffer {
+
+    private final byte[] ring;
+
+    /** The position of the oldest byte in the ring, and the number of bytes held */
+    private int start;
+    private int size;
+
+    private long droppedLines;
+    private long unreportedDroppedLines;
+    private boolean closed;
+
+    LineBuffer(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("The buffer capacity must be positive");
+        }
+        this.ring = new byte[capacity];
+    }
+
+    /***
+     * Add a line to the buffer, or drop it if there is not enough space for all of it
+     *
+     * @param line The bytes of the line, including its line terminator
+     * @param offset The position of the line within the array
+     * @param length The length of the line
+     * @return Whether the line was buffered
+     */
+    synchronized boolean offer(byte[] line, int offset, int length) {
+        if (length > ring.length - size) {
+            droppedLines++;
+            unreportedDroppedLines++;
+            return false;
+        }
+
+        int end = (start + size) % ring.length;
+        int head = Math.min(length, ring.length - end);
+        System.arraycopy(line, offset, ring, end, head);
+        System.arraycopy(line, offset + head, ring, 0, length - head);
+
+        // The writer only ever waits on an empty buffer
+        if (size == 0) {
+            notifyAll();
+        }
+        size += length;
+        return true;
+    }
+
+    /***
+     * Move as much of the buffered output as fits into the batch, waiting for output if there is none
+     *
+     * @param batch The array to fill
+     * @param maxWaitMillis The longest time to wait for output to arrive
+     * @return The number of bytes moved, which is zero if none arrived in time, or -1 once the buffer has been closed
+     *         and is empty
+     * @throws InterruptedException If interrupted whilst waiting
+     */
+    synchronized int drain(byte[] batch, long maxWaitMillis) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(maxWaitMillis);
+        long remaining;
+        while (size == 0 && !closed && (remaining = deadline - System.nanoTime()) > 0) {
+            TimeUnit.NANOSECONDS.timedWait(this, remaining);
+        }
+
+        if (size == 0) {
+            return closed ? -1 : 0;
+        }
+
+        int length = Math.min(size, batch.length);
+        int head = Math.min(length, ring.length - start);
+        System.arraycopy(ring, start, batch, 0, head);
+        System.arraycopy(ring, 0, batch, head, length - head);
+
+        start = (start + length) % ring.length;
+        size -= length;
+        return length;
+    }
+
+    /***
+     * @return The number of lines dropped since the last call, so that each drop is reported exactly once
+     */
+    synchronized long takeUnreportedDroppedLines() {
+        long dropped = unreportedDroppedLines;
+        unreportedDroppedLines = 0;
+        return dropped;
+    }
+
+    /***
+     * @return The number of lines dropped since the buffer was created
+     */
+    synchronized long getDroppedLines() {
+        return droppedLines;
+    }
+
+    /***
+     * Signal that no more output will arrive. The writer drains what is left, and is then told the buffer is closed.
+     */
+    synchronized void close() {
+        closed = true;
+        notifyAll();
+    }
+}
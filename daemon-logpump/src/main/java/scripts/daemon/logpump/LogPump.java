@@ -0,0 +1,268 @@
+package scripts.daemon.logpump;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/***
+ * Copies the application's output, read from standard input, to a rotating log file. The daemon script pipes the
+ * application into this program, in place of redirecting the application straight to a file.
+ * <p />
+ *
+ * One thread reads the output a line at a time into a {@link LineBuffer}, and never waits for the disk. Another drains
+ * the buffer in batches to a {@link RotatingLog}. If the disk falls behind for long enough to fill the buffer, lines
+ * are dropped rather than the application stalled; the log notes how many, and the total is kept in the stats file
+ * for the daemon's metrics command.
+ * <p />
+ *
+ * The program exits once the application has closed its output, i.e. when the application has exited.
+ */
+public final class LogPump {
+
+    /** How long the writer waits for output before checking whether the log is due to be rotated */
+    private static final long IDLE_WAIT_MILLIS = 1000;
+
+    /** The size of the reads from standard input, and the most that is written to the log at once */
+    private static final int READ_SIZE = 64 * 1024;
+    private static final int BATCH_SIZE = 256 * 1024;
+
+    /** Lines longer than this are split, such that a single line can never exceed the buffer */
+    private static final int MAX_LINE_LENGTH = 64 * 1024;
+
+    /** The least time between updates to the stats file */
+    private static final long STATS_INTERVAL_MILLIS = 1000;
+
+    private static final String USAGE = "Usage: LogPump --file <log> [--max-size <size>] [--rotate-interval <duration>]"
+        + " [--retention <count>] [--compress <true|false>] [--buffer-size <size>] [--stats <file>]";
+
+    private static final Pattern SIZE = Pattern.compile("(\\d+)([kmg]?)");
+    private static final Pattern DURATION = Pattern.compile("(\\d+)([smhd])");
+
+    private final LineBuffer buffer;
+    private final RotatingLog log;
+    private final Path statsFile;
+    private long statsWritten;
+
+    LogPump(LineBuffer buffer, RotatingLog log, Path statsFile) {
+        this.buffer = buffer;
+        this.log = log;
+        this.statsFile = statsFile;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Path file = null;
+        Path statsFile = null;
+        long maxSize = parseSize("100m");
+        long rotateIntervalMillis = 0;
+        int retention = 10;
+        boolean compress = true;
+        long bufferSize = parseSize("8m");
+
+        try {
+            for (int index = 0; index < args.length; index += 2) {
+                if (index + 1 >= args.length) {
+                    throw new IllegalArgumentException("Option " + args[index] + " needs a value");
+                }
+
+                String value = args[index + 1];
+                switch (args[index]) {
+                    case "--file":
+                        file = Paths.get(value);
+                        break;
+                    case "--max-size":
+                        maxSize = parseSize(value);
+                        break;
+                    case "--rotate-interval":
+                        rotateIntervalMillis = value.isEmpty() ? 0 : parseDuration(value);
+                        break;
+                    case "--retention":
+                        retention = Integer.parseInt(value);
+                        break;
+                    case "--compress":
+                        compress = Boolean.parseBoolean(value);
+                        break;
+                    case "--buffer-size":
+                        bufferSize = parseSize(value);
+                        break;
+                    case "--stats":
+                        statsFile = Paths.get(value);
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unknown option " + args[index]);
+                }
+            }
+
+            if (file == null) {
+                throw new IllegalArgumentException("No log file given");
+            }
+            if (bufferSize <= 0 || bufferSize > Integer.MAX_VALUE - 8) {
+                throw new IllegalArgumentException("The buffer size must be between 1 byte and 2g");
+            }
+        } catch (IllegalArgumentException ex) {
+            System.err.println(ex.getMessage());
+            System.err.println(USAGE);
+            System.exit(2);
+            return;
+        }
+
+        final LineBuffer buffer = new LineBuffer((int) bufferSize);
+        final int maxLineLength = (int) Math.min(MAX_LINE_LENGTH, bufferSize);
+        Thread reader = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    read(System.in, buffer, maxLineLength);
+                } catch (IOException ex) {
+                    System.err.println("Could not read the application output: " + ex);
+                } finally {
+                    buffer.close();
+                }
+            }
+        }, "logpump-reader");
+        reader.setDaemon(true);
+        reader.start();
+
+        try (RotatingLog log = new RotatingLog(file, maxSize, rotateIntervalMillis, retention, compress)) {
+            new LogPump(buffer, log, statsFile).run();
+        }
+    }
+
+    /***
+     * Split the output into lines and hand them to the buffer. Lines longer than the maximum are handed over in parts.
+     *
+     * @param in The application's output
+     * @param buffer The buffer to fill
+     * @param maxLineLength The longest line handed over in one piece
+     * @throws IOException If the output could not be read
+     */
+    static void read(InputStream in, LineBuffer buffer, int maxLineLength) throws IOException {
+        byte[] chunk = new byte[READ_SIZE];
+        byte[] line = new byte[maxLineLength];
+        int lineLength = 0;
+
+        int read;
+        while ((read = in.read(chunk)) != -1) {
+            for (int index = 0; index < read; index++) {
+                byte next = chunk[index];
+                line[lineLength++] = next;
+                if (next == '\n' || lineLength == line.length) {
+                    buffer.offer(line, 0, lineLength);
+                    lineLength = 0;
+                }
+            }
+        }
+
+        if (lineLength > 0) {
+            buffer.offer(line, 0, lineLength);
+        }
+    }
+
+    /***
+     * Write the buffered output to the log until the buffer is closed and empty
+     */
+    void run() throws IOException, InterruptedException {
+        writeStats(0);
+
+        byte[] batch = new byte[BATCH_SIZE];
+        int length;
+        while ((length = buffer.drain(batch, IDLE_WAIT_MILLIS)) != -1) {
+            try {
+                long dropped = buffer.takeUnreportedDroppedLines();
+                if (dropped > 0) {
+                    byte[] notice = String.format("[logpump] Dropped %d lines, the output buffer was full%n", dropped)
+                        .getBytes(StandardCharsets.UTF_8);
+                    log.write(notice, 0, notice.length);
+                    maybeWriteStats();
+                }
+
+                if (length > 0) {
+                    log.write(batch, 0, length);
+                }
+                log.rotateIfDue(System.currentTimeMillis());
+            } catch (IOException ex) {
+                // Keep draining, so the application is never blocked. What cannot be written is lost.
+                System.err.println("Could not write to the log: " + ex);
+            }
+        }
+
+        writeStats(buffer.getDroppedLines());
+    }
+
+    private void maybeWriteStats() {
+        long now = System.currentTimeMillis();
+        if (now - statsWritten >= STATS_INTERVAL_MILLIS) {
+            writeStats(buffer.getDroppedLines());
+            statsWritten = now;
+        }
+    }
+
+    /***
+     * Record the number of dropped lines as a "name value" line, as the daemon script's metrics are. Once the log has
+     * been set aside for a new process' pump, the stats file is that pump's to write.
+     */
+    private void writeStats(long droppedLines) {
+        if (statsFile == null || log.isSetAside()) {
+            return;
+        }
+
+        try {
+            Path temporary = statsFile.resolveSibling(statsFile.getFileName() + ".tmp");
+            Files.write(temporary, String.format("log_dropped_lines %d%n", droppedLines).getBytes(StandardCharsets.UTF_8));
+            Files.move(temporary, statsFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException ex) {
+            System.err.println("Could not write the stats file: " + ex);
+        }
+    }
+
+    /***
+     * Parse a size in bytes, with an optional k, m or g suffix, e.g. 512k or 100m
+     */
+    static long parseSize(String value) {
+        Matcher matcher = SIZE.matcher(value.trim().toLowerCase(Locale.ROOT));
+        if (!matcher.matches()) {
+            throw new IllegalArgumentException("Invalid size '" + value + "', expected e.g. 512k, 100m or 1g");
+        }
+
+        long size = Long.parseLong(matcher.group(1));
+        switch (matcher.group(2)) {
+            case "g":
+                return size << 30;
+            case "m":
+                return size << 20;
+            case "k":
+                return size << 10;
+            default:
+                return size;
+        }
+    }
+
+    /***
+     * Parse a duration in milliseconds, with an s, m, h or d suffix, e.g. 30m or 1d
+     */
+    static long parseDuration(String value) {
+        Matcher matcher = DURATION.matcher(value.trim().toLowerCase(Locale.ROOT));
+        if (!matcher.matches()) {
+            throw new IllegalArgumentException("Invalid duration '" + value + "', expected e.g. 30m, 6h or 1d");
+        }
+
+        long amount = Long.parseLong(matcher.group(1));
+        switch (matcher.group(2)) {
+            case "d":
+                return TimeUnit.DAYS.toMillis(amount);
+            case "h":
+                return TimeUnit.HOURS.toMillis(amount);
+            case "m":
+                return TimeUnit.MINUTES.toMillis(amount);
+            default:
+                return TimeUnit.SECONDS.toMillis(amount);
+        }
+    }
+}
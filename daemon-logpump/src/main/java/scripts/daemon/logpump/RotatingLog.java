@@ -0,0 +1,316 @@
+package scripts.daemon.logpump;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPOutputStream;
+
+/***
+ * A log file that is rotated once it reaches a size, and/or at a fixed interval. A rotated segment is renamed to
+ * <code>&lt;name&gt;.&lt;yyyyMMdd-HHmmss&gt;</code>, and then, in the background, compressed and the oldest segments
+ * beyond the retention count deleted. The writer therefore never waits on compression.
+ * <p />
+ *
+ * The log is locked whilst it is written to. On reload, the daemon script sets the old process' log aside as a
+ * segment and starts a new pump on a fresh log, whilst the old pump is still writing its process' last output. A
+ * locked segment is therefore left alone until its pump has exited, and a pump whose log has been set aside no longer
+ * rotates it, as the log's name now belongs to the new pump.
+ * <p />
+ *
+ * NOTE: Only one thread may write to the log. The background work runs on a thread of its own.
+ */
+final class RotatingLog implements Closeable {
+
+    /** The format of the timestamp given to rotated segments, which sorts them oldest first */
+    static final String SEGMENT_TIMESTAMP_FORMAT = "yyyyMMdd-HHmmss";
+
+    static final String COMPRESSED_EXTENSION = ".gz";
+
+    private static final int COPY_BUFFER_SIZE = 64 * 1024;
+
+    /** How often to look again at segments that were still being written to by another pump */
+    private static final long HOUSEKEEPING_RETRY_MILLIS = 5000;
+
+    private final Path file;
+    private final long maxSize;
+    private final long rotateIntervalMillis;
+    private final int retention;
+    private final boolean compress;
+
+    private final Pattern segmentName;
+    private final SimpleDateFormat segmentTimestamp = new SimpleDateFormat(SEGMENT_TIMESTAMP_FORMAT);
+    private final ExecutorService housekeeping = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "logpump-housekeeping");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    private FileChannel channel;
+    private Object fileKey;
+    private boolean setAside;
+    private long size;
+    private long nextRotation;
+    private long nextHousekeeping;
+    private volatile boolean segmentsInUse;
+
+    /***
+     * Open the log for appending. Any segments left uncompressed by an earlier run (or renamed by the daemon script at
+     * startup) are compressed and pruned in the background, once no other pump is writing to them.
+     *
+     * @param file The active log file
+     * @param maxSize The size at which the log is rotated, or zero for no limit
+     * @param rotateIntervalMillis The interval at which the log is rotated, or zero to only rotate on size. Rotations
+     *        fall on multiples of the interval since the epoch, e.g. at midnight UTC for an interval of a day.
+     * @param retention The number of rotated segments to keep, or zero to keep them all
+     * @param compress Whether to gzip rotated segments
+     * @throws IOException If the log could not be opened
+     */
+    RotatingLog(Path file, long maxSize, long rotateIntervalMillis, int retention, boolean compress) throws IOException {
+        this.file = file.toAbsolutePath();
+        this.maxSize = maxSize;
+        this.rotateIntervalMillis = rotateIntervalMillis;
+        this.retention = retention;
+        this.compress = compress;
+        this.segmentName = Pattern.compile(
+            Pattern.quote(this.file.getFileName().toString()) + "\\.\\d{8}-\\d{6}(-\\d+)?(" + Pattern.quote(COMPRESSED_EXTENSION) + ")?");
+
+        open(System.currentTimeMillis());
+        scheduleHousekeeping();
+    }
+
+    /***
+     * Append to the log, rotating it first if this write would take it past its maximum size
+     */
+    void write(byte[] data, int offset, int length) throws IOException {
+        if (maxSize > 0 && size > 0 && size + length > maxSize && !isSetAside()) {
+            rotate(System.currentTimeMillis());
+        }
+
+        ByteBuffer buffer = ByteBuffer.wrap(data, offset, length);
+        while (buffer.hasRemaining()) {
+            size += channel.write(buffer);
+        }
+    }
+
+    /***
+     * Rotate the log if its rotation interval has passed. An empty log is left alone. Segments that housekeeping had to
+     * leave, as another pump was still writing to them, are looked at again.
+     *
+     * @param now The current time
+     */
+    void rotateIfDue(long now) throws IOException {
+        if (segmentsInUse && now >= nextHousekeeping) {
+            segmentsInUse = false;
+            nextHousekeeping = now + HOUSEKEEPING_RETRY_MILLIS;
+            scheduleHousekeeping();
+        }
+
+        if (rotateIntervalMillis > 0 && now >= nextRotation) {
+            if (size > 0 && !isSetAside()) {
+                rotate(now);
+            } else {
+                nextRotation = nextRotation(now);
+            }
+        }
+    }
+
+    /***
+     * Check whether the log has been renamed out of the way of another pump, i.e. whether the file this writes to is
+     * no longer the one at the log's path. Once it has, it stays so.
+     */
+    boolean isSetAside() {
+        if (!setAside && fileKey != null) {
+            try {
+                setAside = !fileKey.equals(Files.readAttributes(file, BasicFileAttributes.class).fileKey());
+            } catch (NoSuchFileException ex) {
+                setAside = true;
+            } catch (IOException ex) {
+                System.err.println("Could not check the log file: " + ex);
+            }
+        }
+        return setAside;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            channel.close();
+        } finally {
+            housekeeping.shutdown();
+            try {
+                housekeeping.awaitTermination(1, TimeUnit.MINUTES);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void open(long now) throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        try {
+            // Released when the channel is closed
+            channel.tryLock();
+        } catch (IOException ex) {
+            System.err.println("Could not lock the log, it may be tidied away whilst still written to: " + ex);
+        }
+        fileKey = Files.readAttributes(file, BasicFileAttributes.class).fileKey();
+        size = channel.size();
+        nextRotation = nextRotation(now);
+    }
+
+    private long nextRotation(long now) {
+        return rotateIntervalMillis > 0 ? (now / rotateIntervalMillis + 1) * rotateIntervalMillis : Long.MAX_VALUE;
+    }
+
+    private void rotate(long now) throws IOException {
+        channel.close();
+
+        String baseName = file.getFileName() + "." + segmentTimestamp.format(new Date(now));
+        Path segment = file.resolveSibling(baseName);
+        for (int index = 1; Files.exists(segment) || Files.exists(segment.resolveSibling(segment.getFileName() + COMPRESSED_EXTENSION)); index++) {
+            segment = file.resolveSibling(baseName + "-" + index);
+        }
+        Files.move(file, segment);
+
+        open(now);
+        scheduleHousekeeping();
+    }
+
+    private void scheduleHousekeeping() {
+        housekeeping.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    if (compress) {
+                        for (Path segment : listSegments()) {
+                            if (segment.getFileName().toString().endsWith(COMPRESSED_EXTENSION)) {
+                                continue;
+                            }
+                            if (isInUse(segment)) {
+                                segmentsInUse = true;
+                            } else {
+                                compress(segment);
+                            }
+                        }
+                    }
+                    prune();
+                } catch (IOException ex) {
+                    System.err.println("Could not tidy rotated logs: " + ex);
+                }
+            }
+        });
+    }
+
+    /***
+     * Gzip a segment, writing to a temporary file first such that a partly compressed segment is never mistaken for a
+     * complete one
+     */
+    private static void compress(Path segment) throws IOException {
+        Path compressed = segment.resolveSibling(segment.getFileName() + COMPRESSED_EXTENSION);
+        Path temporary = segment.resolveSibling(segment.getFileName() + COMPRESSED_EXTENSION + ".tmp");
+
+        try (InputStream in = Files.newInputStream(segment);
+                OutputStream out = new GZIPOutputStream(Files.newOutputStream(temporary), COPY_BUFFER_SIZE)) {
+            byte[] buffer = new byte[COPY_BUFFER_SIZE];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+        }
+
+        Files.move(temporary, compressed, StandardCopyOption.REPLACE_EXISTING);
+        Files.delete(segment);
+    }
+
+    private void prune() throws IOException {
+        if (retention <= 0) {
+            return;
+        }
+
+        List<Path> segments = listSegments();
+        for (int index = 0; index < segments.size() - retention; index++) {
+            if (isInUse(segments.get(index))) {
+                segmentsInUse = true;
+            } else {
+                Files.deleteIfExists(segments.get(index));
+            }
+        }
+    }
+
+    /***
+     * Check whether a segment is still locked by the pump writing to it. A pump never writes to a segment again once it
+     * has let go of it, so one found free stays free.
+     */
+    private static boolean isInUse(Path segment) throws IOException {
+        if (segment.getFileName().toString().endsWith(COMPRESSED_EXTENSION)) {
+            return false;
+        }
+
+        try (FileChannel reader = FileChannel.open(segment, StandardOpenOption.READ)) {
+            FileLock lock = reader.tryLock(0, Long.MAX_VALUE, true);
+            if (lock == null) {
+                return true;
+            }
+            lock.release();
+            return false;
+        } catch (OverlappingFileLockException ex) {
+            // Held by another pump in this JVM
+            return true;
+        } catch (NoSuchFileException ex) {
+            return false;
+        }
+    }
+
+    /***
+     * @return The rotated segments of this log, oldest first
+     */
+    List<Path> listSegments() throws IOException {
+        List<Path> segments = new ArrayList<>();
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(file.getParent())) {
+            for (Path entry : entries) {
+                if (segmentName.matcher(entry.getFileName().toString()).matches()) {
+                    segments.add(entry);
+                }
+            }
+        }
+
+        Collections.sort(segments, new Comparator<Path>() {
+            @Override
+            public int compare(Path left, Path right) {
+                return stripCompression(left).compareTo(stripCompression(right));
+            }
+        });
+        return segments;
+    }
+
+    private static String stripCompression(Path segment) {
+        String name = segment.getFileName().toString();
+        return name.endsWith(COMPRESSED_EXTENSION) ? name.substring(0, name.length() - COMPRESSED_EXTENSION.length()) : name;
+    }
+}
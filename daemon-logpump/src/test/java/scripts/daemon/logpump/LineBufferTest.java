@@ -0,0 +1,72 @@
+package scripts.daemon.logpump;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+
+/***
+ * The buffer must never make the application wait: lines that do not fit are dropped and counted
+ */
+public class LineBufferTest {
+
+    @Test
+    public void dropsLinesThatDoNotFit() throws Exception {
+        LineBuffer buffer = new LineBuffer(10);
+
+        assertTrue(offer(buffer, "1234\n"));
+        assertTrue(offer(buffer, "5678\n"));
+        assertFalse(offer(buffer, "9\n"));
+        assertFalse(offer(buffer, "0\n"));
+
+        assertEquals("1234\n5678\n", drain(buffer, 64));
+        assertEquals(2, buffer.takeUnreportedDroppedLines());
+        assertEquals(0, buffer.takeUnreportedDroppedLines());
+        assertEquals(2, buffer.getDroppedLines());
+    }
+
+    @Test
+    public void wrapsAroundTheEndOfTheRing() throws Exception {
+        LineBuffer buffer = new LineBuffer(8);
+
+        offer(buffer, "abcde\n");
+        assertEquals("abc", drain(buffer, 3));
+        offer(buffer, "fgh\n");
+
+        assertEquals("de\nfgh\n", drain(buffer, 64));
+    }
+
+    @Test
+    public void reportsClosedOnceDrained() throws Exception {
+        LineBuffer buffer = new LineBuffer(8);
+        offer(buffer, "last\n");
+        buffer.close();
+
+        assertEquals("last\n", drain(buffer, 64));
+        assertEquals(-1, buffer.drain(new byte[64], 10));
+    }
+
+    @Test
+    public void splitsLinesLongerThanTheMaximum() throws Exception {
+        LineBuffer buffer = new LineBuffer(64);
+        LogPump.read(new ByteArrayInputStream("abcdefgh\nij".getBytes(StandardCharsets.UTF_8)), buffer, 4);
+
+        assertEquals("abcdefgh\nij", drain(buffer, 64));
+        assertEquals(0, buffer.getDroppedLines());
+    }
+
+    private static boolean offer(LineBuffer buffer, String line) {
+        byte[] bytes = line.getBytes(StandardCharsets.UTF_8);
+        return buffer.offer(bytes, 0, bytes.length);
+    }
+
+    private static String drain(LineBuffer buffer, int batchSize) throws InterruptedException {
+        byte[] batch = new byte[batchSize];
+        int length = buffer.drain(batch, 10);
+        return new String(batch, 0, Math.max(length, 0), StandardCharsets.UTF_8);
+    }
+}
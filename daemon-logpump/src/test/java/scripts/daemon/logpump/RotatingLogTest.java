@@ -0,0 +1,119 @@
+package scripts.daemon.logpump;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/***
+ * Rotated segments are compressed and pruned in the background, so the writer never waits for them
+ */
+public class RotatingLogTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void rotatesOnSizeAndKeepsTheNewestSegments() throws Exception {
+        Path file = folder.getRoot().toPath().resolve("nohup.log");
+
+        try (RotatingLog log = new RotatingLog(file, 10, 0, 2, true)) {
+            for (int index = 0; index < 4; index++) {
+                write(log, "line " + index + "\n");
+            }
+        }
+
+        assertEquals("line 3\n", new String(Files.readAllBytes(file), StandardCharsets.UTF_8));
+
+        List<Path> segments;
+        try (RotatingLog reopened = new RotatingLog(file, 10, 0, 2, true)) {
+            segments = reopened.listSegments();
+        }
+        assertEquals(2, segments.size());
+        assertEquals("line 1\n", gunzip(segments.get(0)));
+        assertEquals("line 2\n", gunzip(segments.get(1)));
+    }
+
+    @Test
+    public void rotatesOnInterval() throws Exception {
+        Path file = folder.getRoot().toPath().resolve("nohup.log");
+        long interval = TimeUnit.HOURS.toMillis(1);
+
+        try (RotatingLog log = new RotatingLog(file, 0, interval, 0, false)) {
+            write(log, "before\n");
+            log.rotateIfDue(System.currentTimeMillis() + interval);
+            write(log, "after\n");
+
+            List<Path> segments = log.listSegments();
+            assertEquals(1, segments.size());
+            assertEquals("before\n", new String(Files.readAllBytes(segments.get(0)), StandardCharsets.UTF_8));
+        }
+
+        assertEquals("after\n", new String(Files.readAllBytes(file), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void compressesSegmentsLeftByAnEarlierRun() throws Exception {
+        Path file = folder.getRoot().toPath().resolve("nohup.log");
+        Path leftOver = folder.getRoot().toPath().resolve("nohup.log.20200101-000000");
+        Files.write(leftOver, "old\n".getBytes(StandardCharsets.UTF_8));
+
+        new RotatingLog(file, 0, 0, 0, true).close();
+
+        assertTrue(Files.notExists(leftOver));
+        assertEquals("old\n", gunzip(leftOver.resolveSibling(leftOver.getFileName() + RotatingLog.COMPRESSED_EXTENSION)));
+    }
+
+    @Test
+    public void leavesASetAsideLogToItsPump() throws Exception {
+        Path file = folder.getRoot().toPath().resolve("nohup.log");
+        Path setAside = folder.getRoot().toPath().resolve("nohup.log.20200101-000000");
+
+        try (RotatingLog draining = new RotatingLog(file, 10, 0, 0, true)) {
+            write(draining, "draining\n");
+
+            // As the daemon script does on reload, before the new process' pump opens the log
+            Files.move(file, setAside);
+            try (RotatingLog current = new RotatingLog(file, 10, 0, 0, true)) {
+                write(current, "started\n");
+                write(draining, "stopped\n");
+                assertTrue(draining.isSetAside());
+            }
+
+            assertTrue("A segment still written to should not be compressed", Files.exists(setAside));
+            assertEquals("started\n", new String(Files.readAllBytes(file), StandardCharsets.UTF_8));
+        }
+
+        new RotatingLog(file, 0, 0, 0, true).close();
+        assertEquals("draining\nstopped\n", gunzip(setAside.resolveSibling(setAside.getFileName() + RotatingLog.COMPRESSED_EXTENSION)));
+    }
+
+    private static void write(RotatingLog log, String line) throws IOException {
+        byte[] bytes = line.getBytes(StandardCharsets.UTF_8);
+        log.write(bytes, 0, bytes.length);
+    }
+
+    private static String gunzip(Path segment) throws IOException {
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+        try (InputStream in = new GZIPInputStream(Files.newInputStream(segment))) {
+            byte[] buffer = new byte[1024];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                content.write(buffer, 0, read);
+            }
+        }
+        return new String(content.toByteArray(), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,91 @@
+package scripts.daemon.plugin.maven;
+
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/***
+ * A file or directory in a daemon's archive
+ */
+final class ArchiveEntry implements Comparable<ArchiveEntry> {
+
+    /** The extensions of files that are compressed already, which are stored as they are rather than deflated again */
+    private static final List<String> COMPRESSED_EXTENSIONS = Arrays.asList(
+        ".jar", ".war", ".ear", ".zip", ".jmod", ".gz", ".tgz", ".bz2", ".xz", ".zst", ".png", ".jpg");
+
+    private final String name;
+    private final Path source;
+    private final int mode;
+
+    private ArchiveEntry(String name, Path source, int mode) {
+        this.name = name;
+        this.source = source;
+        this.mode = mode;
+    }
+
+    /***
+     * @param name The directory's path in the archive, which is given a trailing slash
+     */
+    static ArchiveEntry directory(String name) {
+        return new ArchiveEntry(name.endsWith("/") ? name : name + "/", null, 0755);
+    }
+
+    /***
+     * @param name The file's path in the archive
+     * @param source The file to archive
+     * @param executable Whether the file is executable, as scripts are
+     */
+    static ArchiveEntry file(String name, Path source, boolean executable) {
+        return new ArchiveEntry(name, source, executable ? 0755 : 0644);
+    }
+
+    String getName() {
+        return name;
+    }
+
+    /***
+     * @return The file to archive, or null for a directory
+     */
+    Path getSource() {
+        return source;
+    }
+
+    boolean isDirectory() {
+        return source == null;
+    }
+
+    /***
+     * @return The Unix permissions, e.g. 0755
+     */
+    int getMode() {
+        return mode;
+    }
+
+    /***
+     * @return Whether deflating the file is worth the time, i.e. it is not a jar or another compressed file
+     */
+    boolean isCompressible() {
+        String lowerName = name.toLowerCase(Locale.ROOT);
+        for (String extension : COMPRESSED_EXTENSIONS) {
+            if (lowerName.endsWith(extension)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /***
+     * Entries are archived in the order of their names, such that an archive does not depend on the order in which
+     * the file system lists its directories
+     */
+    @Override
+    public int compareTo(ArchiveEntry other) {
+        return name.compareTo(other.name);
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
@@ -0,0 +1,46 @@
+package scripts.daemon.plugin.maven;
+
+/***
+ * The formats that a daemon can be packaged in
+ */
+public enum ArchiveFormat {
+
+    /** A gzipped tar, which keeps the scripts' permissions for any tar on the host */
+    TAR_GZ("tar.gz"),
+
+    /** A zip, with the permissions recorded as Info-ZIP's unzip reads them */
+    ZIP("zip");
+
+    private final String value;
+
+    ArchiveFormat(String value) {
+        this.value = value;
+    }
+
+    /***
+     * @param value The format's name, as given in the POM
+     * @return The format with that name
+     * @throws IllegalArgumentException If there is no such format
+     */
+    public static ArchiveFormat fromValue(String value) {
+        for (ArchiveFormat format : values()) {
+            if (format.value.equals(value)) {
+                return format;
+            }
+        }
+        throw new IllegalArgumentException("No archive format named " + value);
+    }
+
+    /***
+     * @return The archive's file extension, which is also the format's name
+     */
+    public String getExtension() {
+        return value;
+    }
+
+    @Override
+    public String toString() {
+        return value;
+    }
+
+}
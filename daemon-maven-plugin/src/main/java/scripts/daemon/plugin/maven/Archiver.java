@@ -0,0 +1,182 @@
+package scripts.daemon.plugin.maven;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.zip.Deflater;
+
+/***
+ * Writes a daemon's archive, deflating its contents on several threads at once. The archive is the same, byte for
+ * byte, for the same entries, whatever the number of threads: entries are written in order, with fixed timestamps,
+ * owners and permissions, and the work is divided up the same way each time.
+ * <p />
+ *
+ * Whatever is unchanged since the previous archive at the same path is copied from it as it is, rather than being
+ * deflated again. The archive is written alongside the previous one and only replaces it once it is complete.
+ */
+abstract class Archiver {
+
+    /** The most work that is queued ahead of the writer, for each thread, which bounds the memory used */
+    private static final int QUEUE_PER_THREAD = 4;
+
+    protected final ExecutorService executor;
+    protected final int queueSize;
+    protected final int level;
+    protected final long timestamp;
+
+    /***
+     * @param executor The threads to deflate on
+     * @param parallelism The number of threads
+     * @param level The deflate level, from 1 (fastest) to 9 (smallest)
+     * @param timestamp The modification time given to every entry, in milliseconds since the epoch
+     */
+    Archiver(ExecutorService executor, int parallelism, int level, long timestamp) {
+        this.executor = executor;
+        this.queueSize = Math.max(1, parallelism) * QUEUE_PER_THREAD;
+        this.level = level;
+        this.timestamp = timestamp;
+    }
+
+    /***
+     * @param format The format of the archive
+     * @return An archiver for the format
+     */
+    static Archiver forFormat(ArchiveFormat format, ExecutorService executor, int parallelism, int level, long timestamp) {
+        switch (format) {
+            case ZIP:
+                return new ZipArchiver(executor, parallelism, level, timestamp);
+            case TAR_GZ:
+                return new TarGzArchiver(executor, parallelism, level, timestamp);
+            default:
+                throw new IllegalArgumentException("No archiver for " + format);
+        }
+    }
+
+    /***
+     * Write the entries to the archive, in the order given
+     *
+     * @param entries The entries, sorted
+     * @param archive The archive, which replaces any that is there already
+     * @return The number of entries (or, for a tar.gz, blocks) copied from the previous archive
+     * @throws IOException If an entry could not be read, or the archive could not be written
+     */
+    abstract int write(List<ArchiveEntry> entries, Path archive) throws IOException;
+
+    /***
+     * Deflate the input without a zlib or gzip wrapper
+     *
+     * @param input The bytes to deflate
+     * @param length The number of bytes to deflate, from the start of the input
+     * @param level The deflate level, or {@link Deflater#NO_COMPRESSION} to store the input in deflate's own blocks
+     * @param dictionary The data that comes just before the input, which it may refer back to, or null
+     * @param last Whether to end the stream, rather than flush to a byte boundary that more may follow
+     * @return The deflated bytes
+     */
+    static byte[] deflate(byte[] input, int length, int level, byte[] dictionary, boolean last) {
+        Deflater deflater = new Deflater(level, true);
+        try {
+            if (dictionary != null) {
+                deflater.setDictionary(dictionary);
+            }
+            deflater.setInput(input, 0, length);
+
+            ByteArrayOutputStream output = new ByteArrayOutputStream(length / 2 + 64);
+            byte[] buffer = new byte[64 * 1024];
+            if (last) {
+                deflater.finish();
+                while (!deflater.finished()) {
+                    output.write(buffer, 0, deflater.deflate(buffer));
+                }
+            } else {
+                // A full buffer means there may be more to come, see Deflater#deflate(byte[], int, int, int)
+                int deflated;
+                do {
+                    deflated = deflater.deflate(buffer, 0, buffer.length, Deflater.SYNC_FLUSH);
+                    output.write(buffer, 0, deflated);
+                } while (deflated == buffer.length);
+            }
+            return output.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /***
+     * Wait for some queued work, passing on its failure
+     */
+    static <T> T await(Future<T> future) throws IOException {
+        try {
+            return future.get();
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof IOException) {
+                throw (IOException) ex.getCause();
+            }
+            throw new IOException(ex.getCause().getMessage(), ex.getCause());
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted whilst writing the archive", ex);
+        }
+    }
+
+    /***
+     * @return The file that an archive is written to, before it replaces the one at its path
+     */
+    static Path partialFile(Path archive) {
+        return archive.resolveSibling(archive.getFileName() + ".partial");
+    }
+
+    /***
+     * Put the finished archive in place of the previous one
+     */
+    static void replace(Path partial, Path archive) throws IOException {
+        try {
+            Files.move(partial, archive, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException ex) {
+            Files.move(partial, archive, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /***
+     * Read part of a file, as a little-endian buffer
+     */
+    static ByteBuffer read(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of archive");
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    /***
+     * Copy part of the previous archive into the new one, at its current position
+     */
+    static void copy(FileChannel from, long position, long length, FileChannel to) throws IOException {
+        long copied = 0;
+        while (copied < length) {
+            long transferred = from.transferTo(position + copied, length - copied, to);
+            if (transferred <= 0) {
+                throw new IOException("Unexpected end of the previous archive");
+            }
+            copied += transferred;
+        }
+    }
+
+    static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+}
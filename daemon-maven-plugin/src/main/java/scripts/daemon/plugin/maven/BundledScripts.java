@@ -0,0 +1,139 @@
+package scripts.daemon.plugin.maven;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+import org.codehaus.plexus.util.IOUtil;
+
+/***
+ * The scripts bundled inside the plugin jar, under <code>/scripts-bundled/</code>.
+ * <p />
+ *
+ * The bundled scripts cannot change for the lifetime of the plugin's classloader. Therefore, each resource is read
+ * (and, for zips, inflated) straight out of the jar on first use and cached, such that the second and later modules in
+ * a reactor - or in a long-lived Maven daemon - never read the jar or inflate the zip again.
+ * <p />
+ *
+ * NOTE: The byte arrays handed out are shared between callers and must not be modified.
+ */
+final class BundledScripts {
+
+    /** The digest used for the bundled resources, and for the files generated from them */
+    static final HashFunction DIGEST = Hashing.sha256();
+
+    private static final ConcurrentMap<String, Resource> CACHE = new ConcurrentHashMap<>();
+
+    private BundledScripts() {
+    }
+
+    /***
+     * Get the content of a file bundled inside the jar
+     *
+     * @param jarPath The file path, locating the resource within the JAR
+     * @return The content of the file
+     * @throws IOException If the file could not be read
+     */
+    static byte[] read(String jarPath) throws IOException {
+        return get(jarPath).content;
+    }
+
+    /***
+     * Get the hex digest of a file bundled inside the jar
+     *
+     * @param jarPath The file path, locating the resource within the JAR
+     * @return The digest of the file's content
+     * @throws IOException If the file could not be read
+     */
+    static String digest(String jarPath) throws IOException {
+        return get(jarPath).digest;
+    }
+
+    /***
+     * Get the decompressed entries of a zip file bundled inside the jar. Directories are omitted, as they are
+     * implied by the paths of the files within them.
+     *
+     * @param jarPath The zip file path, locating the resource within the JAR
+     * @return The content of each file in the zip, keyed on its path within the zip, in the order they are stored
+     * @throws IOException If the zip could not be read
+     */
+    static Map<String, byte[]> unzip(String jarPath) throws IOException {
+        Resource resource = get(jarPath);
+
+        Map<String, byte[]> entries = resource.entries;
+        if (entries == null) {
+            synchronized (resource) {
+                entries = resource.entries;
+                if (entries == null) {
+                    entries = inflate(resource.content);
+                    resource.entries = entries;
+                }
+            }
+        }
+
+        return entries;
+    }
+
+    private static Resource get(String jarPath) throws IOException {
+        Resource resource = CACHE.get(jarPath);
+        if (resource == null) {
+            Resource loaded = new Resource(load(jarPath));
+            resource = CACHE.putIfAbsent(jarPath, loaded);
+            if (resource == null) {
+                resource = loaded;
+            }
+        }
+        return resource;
+    }
+
+    private static byte[] load(String jarPath) throws IOException {
+        try (InputStream jarFileStream = BundledScripts.class.getResourceAsStream(jarPath)) {
+            if (jarFileStream == null) {
+                throw new IllegalArgumentException(String.format("File '%s' could not be found in JAR", jarPath));
+            }
+            return IOUtil.toByteArray(jarFileStream);
+        }
+    }
+
+    /***
+     * Decompress a zip held in memory. Callers should go through {@link #unzip}, which caches the result; this is only
+     * visible to measure the cost that the cache saves.
+     */
+    static Map<String, byte[]> inflate(byte[] zipContent) throws IOException {
+        Map<String, byte[]> entries = new LinkedHashMap<>();
+
+        try (ZipInputStream zip = new ZipInputStream(new ByteArrayInputStream(zipContent))) {
+            ZipEntry entry;
+            while ((entry = zip.getNextEntry()) != null) {
+                if (!entry.isDirectory()) {
+                    entries.put(entry.getName(), IOUtil.toByteArray(zip));
+                }
+            }
+        }
+
+        return Collections.unmodifiableMap(entries);
+    }
+
+    /***
+     * A single cached resource
+     */
+    private static final class Resource {
+        private final byte[] content;
+        private final String digest;
+        private volatile Map<String, byte[]> entries;
+
+        private Resource(byte[] content) {
+            this.content = content;
+            this.digest = DIGEST.hashBytes(content).toString();
+        }
+    }
+}
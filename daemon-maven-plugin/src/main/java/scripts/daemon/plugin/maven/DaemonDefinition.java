@@ -0,0 +1,800 @@
+package scripts.daemon.plugin.maven;
+
+import static scripts.daemon.plugin.maven.DaemonMojo.PARAM_APP_TYPE;
+import static scripts.daemon.plugin.maven.DaemonMojo.PARAM_CLASS_DATA_SHARING;
+import static scripts.daemon.plugin.maven.DaemonMojo.PARAM_CONTROL_AGENT;
+import static scripts.daemon.plugin.maven.DaemonMojo.PARAM_CPU_SETS;
+import static scripts.daemon.plugin.maven.DaemonMojo.PARAM_DEPENDS_ON;
+import static scripts.daemon.plugin.maven.DaemonMojo.PARAM_DRAIN_SIGNAL;
+import static scripts.daemon.plugin.maven.DaemonMojo.PARAM_DRAIN_TIMEOUT;
+import static scripts.daemon.plugin.maven.DaemonMojo.PARAM_EXECUTABLE;
+import static scripts.daemon.plugin.maven.DaemonMojo.PARAM_INSTANCES;
+import static scripts.daemon.plugin.maven.DaemonMojo.PARAM_JAR_STORE;
+import static scripts.daemon.plugin.maven.DaemonMojo.PARAM_JAVA_HOME;
+import static scripts.daemon.plugin.maven.DaemonMojo.PARAM_JLINK_RUNTIME;
+import static scripts.daemon.plugin.maven.DaemonMojo.PARAM_JVM_PROFILE;
+import static scripts.daemon.plugin.maven.DaemonMojo.PARAM_LOG_BUFFER_SIZE;
+import static scripts.daemon.plugin.maven.DaemonMojo.PARAM_LOG_MAX_SIZE;
+import static scripts.daemon.plugin.maven.DaemonMojo.PARAM_LOG_RETENTION;
+import static scripts.daemon.plugin.maven.DaemonMojo.PARAM_LOG_ROTATE_INTERVAL;
+import static scripts.daemon.plugin.maven.DaemonMojo.PARAM_MAIN_METHOD;
+import static scripts.daemon.plugin.maven.DaemonMojo.PARAM_READINESS_TIMEOUT;
+import static scripts.daemon.plugin.maven.DaemonMojo.PARAM_RELOAD_PORT;
+import static scripts.daemon.plugin.maven.DaemonMojo.PARAM_RESTART_DELAY;
+import static scripts.daemon.plugin.maven.DaemonMojo.PARAM_RESTART_LIMIT;
+import static scripts.daemon.plugin.maven.DaemonMojo.PARAM_RESTART_POLICY;
+import static scripts.daemon.plugin.maven.DaemonMojo.PARAM_SERVICE_ID;
+
+import java.util.Arrays;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.commons.lang3.StringUtils;
+
+/***
+ * The configuration of a single daemon. This is populated from the parameters of the <code>generate-daemon</code>
+ * goal, or from each <code>&lt;daemon&gt;</code> block given to the <code>generate-daemons</code> goal, and has the
+ * same fields (and meaning) as the parameters of {@link DaemonMojo}.
+ */
+public class DaemonDefinition {
+
+    /** The sizes and durations understood by the log pump, e.g. 100m and 1d */
+    private static final Pattern LOG_SIZE = Pattern.compile("\\d+[kKmMgG]?");
+    private static final Pattern LOG_DURATION = Pattern.compile("\\d+[smhd]");
+
+    /** A CPU list as taskset takes it, e.g. 0-15 or 0,2,4 */
+    private static final Pattern CPU_SET = Pattern.compile("\\d+(-\\d+)?(,\\d+(-\\d+)?)*");
+
+    /** A signal as kill takes it, by name or number, e.g. TERM, SIGUSR2 or 15 */
+    private static final Pattern SIGNAL = Pattern.compile("(SIG)?[A-Z][A-Z0-9+-]*|\\d+");
+
+    /** A service ID, which daemonctl also uses in file names and shell words */
+    private static final Pattern SERVICE_ID = Pattern.compile("[A-Za-z0-9_.-]+");
+
+    /** An HTTP(S) URL with a host, and optionally a port and path, as the readiness probe understands it */
+    private static final Pattern HTTP_URL = Pattern.compile("https?://[^/:?#\\s]+(:\\d+)?([/?#]\\S*)?");
+
+    /** The directory in which to store the daemon files. Optional when part of a batch */
+    private String outputDirectory;
+
+    /** The name of the application that is being boostrapped, used for logging */
+    private String applicationName;
+
+    /** The filename that the script should have */
+    private String scriptName;
+
+    /** The application's main method */
+    private String mainMethod;
+
+    /** The name of the generic executable file */
+    private String executableFile;
+
+    /** The type of application */
+    private String appType;
+
+    /** The JVM arguments to pass at application startup */
+    private String jvmArgs;
+
+    /** The ergonomics profile to size the JVM with at launch, if any */
+    private String jvmProfile;
+
+    /** The arguments to pass to the application's main method */
+    private String appArgs;
+
+    /** The additional items to put on the classpath */
+    private String[] additionalClasspath;
+
+    /** The java home directory to use to execute the code */
+    private String javaHome;
+
+    /** Whether to link a private runtime for a JAVA daemon, in place of using javaHome */
+    private boolean jlinkRuntime;
+
+    /** Further modules to link into the runtime, beyond those jdeps finds */
+    private String[] jlinkModules;
+
+    /** Whether to compress the linked runtime */
+    private boolean jlinkCompress;
+
+    /** The JDK to link the runtime from, if not the one running the build */
+    private String jlinkJdkHome;
+
+    /** Whether to compute the runtime classpath at build time, rather than scanning the lib directory at startup */
+    private boolean generateClasspath;
+
+    /** Whether the project's own jar is part of the generated classpath */
+    private boolean includeProjectArtifact = true;
+
+    /** Whether to inline everything the daemon script sources into a single script */
+    private boolean singleFile;
+
+    /** Whether a JAVA daemon should create and use an AppCDS archive for its classpath */
+    private boolean classDataSharing;
+
+    /** Whether to attach the control agent to a JAVA application */
+    private boolean controlAgent;
+
+    /** The host-wide directory that a JAVA daemon keeps its jars in, shared with other daemons */
+    private String jarStore;
+
+    /** A local TCP port that must accept connections before the application is considered ready */
+    private Integer readinessTcpPort;
+
+    /** An HTTP URL that must respond with a 2xx status before the application is considered ready */
+    private String readinessHttpUrl;
+
+    /** A regular expression that must appear in the application's output before it is considered ready */
+    private String readinessLogPattern;
+
+    /** A file (relative to the daemon's base directory) the application writes once it is ready */
+    private String readinessFile;
+
+    /** The number of seconds to wait for the application to become ready */
+    private int readinessTimeout = 60;
+
+    /** Whether the status and metrics commands also write a Prometheus textfile to the var directory */
+    private boolean metricsTextfile;
+
+    /** Whether the application's output is piped through the log pump */
+    private boolean logPump;
+
+    /** The size at which the log is rotated */
+    private String logMaxSize = "100m";
+
+    /** The interval at which the log is rotated */
+    private String logRotateInterval;
+
+    /** The number of rotated logs to keep */
+    private int logRetention = 10;
+
+    /** Whether rotated logs are gzipped */
+    private boolean logCompress = true;
+
+    /** The size of the in-memory buffer between the application and the log */
+    private String logBufferSize = "8m";
+
+    /** The number of instances of the application to run */
+    private int instances = 1;
+
+    /** The CPU sets to pin the instances to */
+    private String[] cpuSets;
+
+    /** The NUMA nodes to bind the instances to */
+    private String[] numaNodes;
+
+    /** When the supervisor restarts the application, or never to run it unsupervised */
+    private String restartPolicy = "never";
+
+    /** The milliseconds to wait before the first restart */
+    private int restartDelay = 100;
+
+    /** The most milliseconds to wait before a restart */
+    private int restartMaxDelay = 30000;
+
+    /** The most restarts within the restart window, beyond which the application is left stopped */
+    private int restartLimit = 5;
+
+    /** The seconds over which restarts are counted towards the limit */
+    private int restartWindow = 60;
+
+    /** The port the new process of a reload is started on, whilst the old one holds the readiness port */
+    private Integer reloadPort;
+
+    /** The signal that tells the old process of a reload to drain */
+    private String drainSignal = "TERM";
+
+    /** The seconds the old process of a reload has to drain */
+    private int drainTimeout = 30;
+
+    /** The name other daemons on the host depend on this one by. Defaults to the script's name */
+    private String serviceId;
+
+    /** The service IDs of the daemons that must be running before this one is started */
+    private String[] dependsOn;
+
+    /***
+     * The daemon script can launch either Java applications or generic executables. Here we need to validate that the
+     * {@link #appType} provided is a supported value.
+     * <p />
+     *
+     * NOTE: This is a new parameter, but we're going to make it mandatory. Therefore, we need a nice error if it is not
+     * present, as downstream consumers will run into this problem.
+     */
+    void validate() {
+        ApplicationType parsedAppType = null;
+
+        if (StringUtils.isNoneBlank(appType)) {
+            try {
+                parsedAppType = ApplicationType.valueOf(appType);
+            } catch (IllegalArgumentException ex) {
+                throw new IllegalArgumentException(String.format(
+                    "The '%s' value provided for property %s is not supported. Supported types: %s",
+                    appType, PARAM_APP_TYPE, Arrays.toString(ApplicationType.values())), ex);
+            }
+        } else {
+            throw new IllegalArgumentException(String.format(
+                "No value provided for property %s. Supported types: %s", PARAM_APP_TYPE, Arrays.toString(ApplicationType.values())));
+        }
+
+        if (readinessTimeout <= 0) {
+            throw new IllegalArgumentException(String.format("Parameter '%s' must be a positive number of seconds",
+                PARAM_READINESS_TIMEOUT));
+        }
+
+        if (StringUtils.isNotBlank(readinessHttpUrl) && !HTTP_URL.matcher(readinessHttpUrl).matches()) {
+            throw new IllegalArgumentException(String.format(
+                "The '%s' value provided for property readinessHttpUrl is not an http:// or https:// URL", readinessHttpUrl));
+        }
+
+        if (logPump) {
+            validateLogPump();
+        }
+
+        validateInstances();
+        validateRestarts();
+        validateReload();
+        validateDependencies();
+
+        switch (parsedAppType) {
+            case EXECUTABLE:
+                if (StringUtils.isBlank(executableFile)) {
+                    throw new IllegalArgumentException(String.format("Parameter '%s' is not optional when application type is %s",
+                        PARAM_EXECUTABLE, ApplicationType.EXECUTABLE));
+                }
+
+                if (classDataSharing) {
+                    throw new IllegalArgumentException(String.format("Parameter '%s' is only supported when application type is %s",
+                        PARAM_CLASS_DATA_SHARING, ApplicationType.JAVA));
+                }
+
+                if (StringUtils.isNotBlank(jvmProfile)) {
+                    throw new IllegalArgumentException(String.format("Parameter '%s' is only supported when application type is %s",
+                        PARAM_JVM_PROFILE, ApplicationType.JAVA));
+                }
+
+                if (jlinkRuntime) {
+                    throw new IllegalArgumentException(String.format("Parameter '%s' is only supported when application type is %s",
+                        PARAM_JLINK_RUNTIME, ApplicationType.JAVA));
+                }
+
+                if (controlAgent) {
+                    throw new IllegalArgumentException(String.format("Parameter '%s' is only supported when application type is %s",
+                        PARAM_CONTROL_AGENT, ApplicationType.JAVA));
+                }
+
+                if (StringUtils.isNotBlank(jarStore)) {
+                    throw new IllegalArgumentException(String.format("Parameter '%s' is only supported when application type is %s",
+                        PARAM_JAR_STORE, ApplicationType.JAVA));
+                }
+                break;
+            case JAVA:
+                if (jlinkRuntime) {
+                    if (StringUtils.isNotBlank(javaHome)) {
+                        throw new IllegalArgumentException(String.format(
+                            "Parameters '%s' and '%s' cannot be used together, the daemon runs on either one or the other",
+                            PARAM_JAVA_HOME, PARAM_JLINK_RUNTIME));
+                    }
+                } else if (StringUtils.isBlank(javaHome)) {
+                    throw new IllegalArgumentException(String.format("Parameter '%s' is not optional when application type is %s",
+                        PARAM_JAVA_HOME, ApplicationType.JAVA));
+                }
+
+                if (StringUtils.isBlank(mainMethod)) {
+                    throw new IllegalArgumentException(String.format("Parameter '%s' is not optional when application type is %s",
+                        PARAM_MAIN_METHOD, ApplicationType.JAVA));
+                }
+
+                if (StringUtils.isNotBlank(jvmProfile)) {
+                    try {
+                        JvmProfile.fromValue(jvmProfile);
+                    } catch (IllegalArgumentException ex) {
+                        throw new IllegalArgumentException(String.format(
+                            "The '%s' value provided for property %s is not supported. Supported profiles: %s",
+                            jvmProfile, PARAM_JVM_PROFILE, Arrays.toString(JvmProfile.values())), ex);
+                    }
+                }
+
+                // The store is shared by installs in different places, so it cannot be relative to any one of them
+                if (StringUtils.isNotBlank(jarStore) && !jarStore.startsWith("/") && !jarStore.startsWith("$")) {
+                    throw new IllegalArgumentException(String.format(
+                        "Parameter '%s' must be an absolute path, or start with an environment variable such as ${HOME}", PARAM_JAR_STORE));
+                }
+                break;
+            default:
+                /* NO-OP: No validation to do? */
+                break;
+        }
+    }
+
+    private void validateInstances() {
+        if (instances < 1) {
+            throw new IllegalArgumentException(String.format("Parameter '%s' must be at least 1", PARAM_INSTANCES));
+        }
+
+        if (instances > 1 && StringUtils.isNotBlank(readinessHttpUrl)) {
+            Matcher url = HTTP_URL.matcher(readinessHttpUrl);
+            if (url.matches() && url.group(1) == null) {
+                throw new IllegalArgumentException(String.format(
+                    "The readinessHttpUrl '%s' must give a port when there are %d instances, as each probes its own "
+                        + "port offset by its index", readinessHttpUrl, instances));
+            }
+        }
+
+        if (cpuSets != null && cpuSets.length > 0 && numaNodes != null && numaNodes.length > 0) {
+            throw new IllegalArgumentException(String.format(
+                "Instances can be pinned with either '%s' or 'numaNodes', not both", PARAM_CPU_SETS));
+        }
+
+        if (cpuSets != null && !(cpuSets.length == 1 && "auto".equals(cpuSets[0]))) {
+            for (String cpuSet : cpuSets) {
+                if (cpuSet == null || !CPU_SET.matcher(cpuSet).matches()) {
+                    throw new IllegalArgumentException(String.format(
+                        "The '%s' value provided for property %s is not a CPU list, e.g. 0-15 or 0,2,4", cpuSet, PARAM_CPU_SETS));
+                }
+            }
+        }
+
+        if (numaNodes != null && !(numaNodes.length == 1 && "auto".equals(numaNodes[0]))) {
+            for (String numaNode : numaNodes) {
+                if (numaNode == null || !StringUtils.isNumeric(numaNode)) {
+                    throw new IllegalArgumentException(String.format(
+                        "The '%s' value provided for property numaNodes is not a NUMA node number", numaNode));
+                }
+            }
+        }
+    }
+
+    private void validateRestarts() {
+        try {
+            RestartPolicy.fromValue(restartPolicy);
+        } catch (IllegalArgumentException ex) {
+            throw new IllegalArgumentException(String.format(
+                "The '%s' value provided for property %s is not supported. Supported policies: %s",
+                restartPolicy, PARAM_RESTART_POLICY, Arrays.toString(RestartPolicy.values())), ex);
+        }
+
+        if (restartDelay <= 0 || restartMaxDelay < restartDelay) {
+            throw new IllegalArgumentException(String.format(
+                "Parameter '%s' must be a positive number of milliseconds, and no more than 'restartMaxDelay'", PARAM_RESTART_DELAY));
+        }
+
+        if (restartLimit < 1 || restartWindow < 1) {
+            throw new IllegalArgumentException(String.format(
+                "Parameters '%s' and 'restartWindow' must be at least 1", PARAM_RESTART_LIMIT));
+        }
+    }
+
+    private void validateReload() {
+        if (StringUtils.isBlank(drainSignal) || !SIGNAL.matcher(drainSignal).matches()) {
+            throw new IllegalArgumentException(String.format(
+                "The '%s' value provided for property %s is not a signal, e.g. TERM or USR2", drainSignal, PARAM_DRAIN_SIGNAL));
+        }
+
+        if (drainTimeout < 1) {
+            throw new IllegalArgumentException(String.format("Parameter '%s' must be a positive number of seconds", PARAM_DRAIN_TIMEOUT));
+        }
+
+        if (reloadPort != null) {
+            if (readinessTcpPort == null) {
+                throw new IllegalArgumentException(String.format(
+                    "Parameter '%s' is only supported along with 'readinessTcpPort'", PARAM_RELOAD_PORT));
+            }
+            // Each instance takes the port plus its index, so the two ranges of ports must not overlap
+            if (Math.abs(reloadPort - readinessTcpPort) < instances) {
+                throw new IllegalArgumentException(String.format(
+                    "Parameter '%s' must be at least %d away from 'readinessTcpPort', one port for each instance",
+                    PARAM_RELOAD_PORT, instances));
+            }
+        }
+    }
+
+    private void validateDependencies() {
+        String id = getServiceId();
+        if (StringUtils.isNotBlank(serviceId) && !SERVICE_ID.matcher(serviceId).matches()) {
+            throw new IllegalArgumentException(String.format(
+                "The '%s' value provided for property %s may only hold letters, digits, '.', '_' and '-'", serviceId, PARAM_SERVICE_ID));
+        }
+
+        if (dependsOn != null) {
+            for (String dependency : dependsOn) {
+                if (dependency == null || !SERVICE_ID.matcher(dependency).matches()) {
+                    throw new IllegalArgumentException(String.format(
+                        "The '%s' value provided for property %s is not a service ID", dependency, PARAM_DEPENDS_ON));
+                }
+                if (dependency.equals(id)) {
+                    throw new IllegalArgumentException(String.format("Service '%s' cannot depend on itself", id));
+                }
+            }
+        }
+    }
+
+    private void validateLogPump() {
+        if (StringUtils.isBlank(logMaxSize) || !LOG_SIZE.matcher(logMaxSize).matches()) {
+            throw new IllegalArgumentException(String.format("Parameter '%s' must be a size, e.g. 100m", PARAM_LOG_MAX_SIZE));
+        }
+
+        if (StringUtils.isBlank(logBufferSize) || !LOG_SIZE.matcher(logBufferSize).matches()) {
+            throw new IllegalArgumentException(String.format("Parameter '%s' must be a size, e.g. 8m", PARAM_LOG_BUFFER_SIZE));
+        }
+
+        if (StringUtils.isNotBlank(logRotateInterval) && !LOG_DURATION.matcher(logRotateInterval).matches()) {
+            throw new IllegalArgumentException(String.format("Parameter '%s' must be a duration, e.g. 1h or 1d",
+                PARAM_LOG_ROTATE_INTERVAL));
+        }
+
+        if (logRetention < 0) {
+            throw new IllegalArgumentException(String.format("Parameter '%s' must not be negative", PARAM_LOG_RETENTION));
+        }
+    }
+
+    public String getOutputDirectory() {
+        return outputDirectory;
+    }
+
+    public void setOutputDirectory(String outputDirectory) {
+        this.outputDirectory = outputDirectory;
+    }
+
+    public String getApplicationName() {
+        return applicationName;
+    }
+
+    public void setApplicationName(String applicationName) {
+        this.applicationName = applicationName;
+    }
+
+    public String getScriptName() {
+        return scriptName;
+    }
+
+    public void setScriptName(String scriptName) {
+        this.scriptName = scriptName;
+    }
+
+    public String getMainMethod() {
+        return mainMethod;
+    }
+
+    public void setMainMethod(String mainMethod) {
+        this.mainMethod = mainMethod;
+    }
+
+    public String getExecutableFile() {
+        return executableFile;
+    }
+
+    public void setExecutableFile(String executableFile) {
+        this.executableFile = executableFile;
+    }
+
+    public String getAppType() {
+        return appType;
+    }
+
+    public void setAppType(String appType) {
+        this.appType = appType;
+    }
+
+    public String getJvmArgs() {
+        return jvmArgs;
+    }
+
+    public void setJvmArgs(String jvmArgs) {
+        this.jvmArgs = jvmArgs;
+    }
+
+    public String getJvmProfile() {
+        return jvmProfile;
+    }
+
+    public void setJvmProfile(String jvmProfile) {
+        this.jvmProfile = jvmProfile;
+    }
+
+    public String getAppArgs() {
+        return appArgs;
+    }
+
+    public void setAppArgs(String appArgs) {
+        this.appArgs = appArgs;
+    }
+
+    public String[] getAdditionalClasspath() {
+        return additionalClasspath;
+    }
+
+    public void setAdditionalClasspath(String[] additionalClasspath) {
+        this.additionalClasspath = additionalClasspath;
+    }
+
+    public String getJavaHome() {
+        return javaHome;
+    }
+
+    public void setJavaHome(String javaHome) {
+        this.javaHome = javaHome;
+    }
+
+    public boolean isGenerateClasspath() {
+        return generateClasspath;
+    }
+
+    public void setGenerateClasspath(boolean generateClasspath) {
+        this.generateClasspath = generateClasspath;
+    }
+
+    public boolean isIncludeProjectArtifact() {
+        return includeProjectArtifact;
+    }
+
+    public void setIncludeProjectArtifact(boolean includeProjectArtifact) {
+        this.includeProjectArtifact = includeProjectArtifact;
+    }
+
+    public boolean isJlinkRuntime() {
+        return jlinkRuntime;
+    }
+
+    public void setJlinkRuntime(boolean jlinkRuntime) {
+        this.jlinkRuntime = jlinkRuntime;
+    }
+
+    public String[] getJlinkModules() {
+        return jlinkModules;
+    }
+
+    public void setJlinkModules(String[] jlinkModules) {
+        this.jlinkModules = jlinkModules;
+    }
+
+    public boolean isJlinkCompress() {
+        return jlinkCompress;
+    }
+
+    public void setJlinkCompress(boolean jlinkCompress) {
+        this.jlinkCompress = jlinkCompress;
+    }
+
+    public String getJlinkJdkHome() {
+        return jlinkJdkHome;
+    }
+
+    public void setJlinkJdkHome(String jlinkJdkHome) {
+        this.jlinkJdkHome = jlinkJdkHome;
+    }
+
+    public boolean isSingleFile() {
+        return singleFile;
+    }
+
+    public void setSingleFile(boolean singleFile) {
+        this.singleFile = singleFile;
+    }
+
+    public boolean isControlAgent() {
+        return controlAgent;
+    }
+
+    public void setControlAgent(boolean controlAgent) {
+        this.controlAgent = controlAgent;
+    }
+
+    public String getJarStore() {
+        return jarStore;
+    }
+
+    public void setJarStore(String jarStore) {
+        this.jarStore = jarStore;
+    }
+
+    public boolean isClassDataSharing() {
+        return classDataSharing;
+    }
+
+    public void setClassDataSharing(boolean classDataSharing) {
+        this.classDataSharing = classDataSharing;
+    }
+
+    public Integer getReadinessTcpPort() {
+        return readinessTcpPort;
+    }
+
+    public void setReadinessTcpPort(Integer readinessTcpPort) {
+        this.readinessTcpPort = readinessTcpPort;
+    }
+
+    public String getReadinessHttpUrl() {
+        return readinessHttpUrl;
+    }
+
+    public void setReadinessHttpUrl(String readinessHttpUrl) {
+        this.readinessHttpUrl = readinessHttpUrl;
+    }
+
+    public String getReadinessLogPattern() {
+        return readinessLogPattern;
+    }
+
+    public void setReadinessLogPattern(String readinessLogPattern) {
+        this.readinessLogPattern = readinessLogPattern;
+    }
+
+    public String getReadinessFile() {
+        return readinessFile;
+    }
+
+    public void setReadinessFile(String readinessFile) {
+        this.readinessFile = readinessFile;
+    }
+
+    public int getReadinessTimeout() {
+        return readinessTimeout;
+    }
+
+    public void setReadinessTimeout(int readinessTimeout) {
+        this.readinessTimeout = readinessTimeout;
+    }
+
+    public boolean isMetricsTextfile() {
+        return metricsTextfile;
+    }
+
+    public void setMetricsTextfile(boolean metricsTextfile) {
+        this.metricsTextfile = metricsTextfile;
+    }
+
+    public boolean isLogPump() {
+        return logPump;
+    }
+
+    public void setLogPump(boolean logPump) {
+        this.logPump = logPump;
+    }
+
+    public String getLogMaxSize() {
+        return logMaxSize;
+    }
+
+    public void setLogMaxSize(String logMaxSize) {
+        this.logMaxSize = logMaxSize;
+    }
+
+    public String getLogRotateInterval() {
+        return logRotateInterval;
+    }
+
+    public void setLogRotateInterval(String logRotateInterval) {
+        this.logRotateInterval = logRotateInterval;
+    }
+
+    public int getLogRetention() {
+        return logRetention;
+    }
+
+    public void setLogRetention(int logRetention) {
+        this.logRetention = logRetention;
+    }
+
+    public boolean isLogCompress() {
+        return logCompress;
+    }
+
+    public void setLogCompress(boolean logCompress) {
+        this.logCompress = logCompress;
+    }
+
+    public int getInstances() {
+        return instances;
+    }
+
+    public void setInstances(int instances) {
+        this.instances = instances;
+    }
+
+    public String[] getCpuSets() {
+        return cpuSets;
+    }
+
+    public void setCpuSets(String[] cpuSets) {
+        this.cpuSets = cpuSets;
+    }
+
+    public String[] getNumaNodes() {
+        return numaNodes;
+    }
+
+    public void setNumaNodes(String[] numaNodes) {
+        this.numaNodes = numaNodes;
+    }
+
+    public String getRestartPolicy() {
+        return restartPolicy;
+    }
+
+    public void setRestartPolicy(String restartPolicy) {
+        this.restartPolicy = restartPolicy;
+    }
+
+    public int getRestartDelay() {
+        return restartDelay;
+    }
+
+    public void setRestartDelay(int restartDelay) {
+        this.restartDelay = restartDelay;
+    }
+
+    public int getRestartMaxDelay() {
+        return restartMaxDelay;
+    }
+
+    public void setRestartMaxDelay(int restartMaxDelay) {
+        this.restartMaxDelay = restartMaxDelay;
+    }
+
+    public int getRestartLimit() {
+        return restartLimit;
+    }
+
+    public void setRestartLimit(int restartLimit) {
+        this.restartLimit = restartLimit;
+    }
+
+    public int getRestartWindow() {
+        return restartWindow;
+    }
+
+    public void setRestartWindow(int restartWindow) {
+        this.restartWindow = restartWindow;
+    }
+
+    public Integer getReloadPort() {
+        return reloadPort;
+    }
+
+    public void setReloadPort(Integer reloadPort) {
+        this.reloadPort = reloadPort;
+    }
+
+    public String getDrainSignal() {
+        return drainSignal;
+    }
+
+    public void setDrainSignal(String drainSignal) {
+        this.drainSignal = drainSignal;
+    }
+
+    public int getDrainTimeout() {
+        return drainTimeout;
+    }
+
+    public void setDrainTimeout(int drainTimeout) {
+        this.drainTimeout = drainTimeout;
+    }
+
+    /***
+     * @return The service ID, or the script's name if none was given
+     */
+    public String getServiceId() {
+        return StringUtils.isBlank(serviceId) ? scriptName : serviceId;
+    }
+
+    public void setServiceId(String serviceId) {
+        this.serviceId = serviceId;
+    }
+
+    public String[] getDependsOn() {
+        return dependsOn;
+    }
+
+    public void setDependsOn(String[] dependsOn) {
+        this.dependsOn = dependsOn;
+    }
+
+    public String getLogBufferSize() {
+        return logBufferSize;
+    }
+
+    public void setLogBufferSize(String logBufferSize) {
+        this.logBufferSize = logBufferSize;
+    }
+}
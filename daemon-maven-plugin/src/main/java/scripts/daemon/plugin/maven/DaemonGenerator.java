@@ -0,0 +1,624 @@
+package scripts.daemon.plugin.maven;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.google.common.base.CharMatcher;
+import com.google.common.base.Joiner;
+import com.google.common.base.Splitter;
+import com.google.common.hash.Hasher;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugin.logging.Log;
+import org.apache.maven.project.MavenProject;
+
+/***
+ * Generates the scripts for a single daemon into its output directory. This holds no state beyond the daemon it was
+ * created for, so any number of generators may run at the same time - whether for the daemons of a single
+ * <code>generate-daemons</code> execution, or for different modules in a parallel (<code>mvn -T</code>) build.
+ */
+class DaemonGenerator {
+
+    /** The directory that contains the common scripts, bundled inside the jar */
+    private static final String COMMON_SCRIPTS = "/scripts-bundled/common-scripts.zip";
+
+    /** The daemon script file, which will be copied-over and renamed during build */
+    private static final String DAEMON_SCRIPT = "/scripts-bundled/daemon";
+
+    /** The name format of the extension script which will support the given application type */
+    private static final String DAEMON_SCRIPT_APPLICATION_EXTENSION = "/scripts-bundled/daemon-%s";
+
+    /** The host-level script that starts and stops every daemon installed alongside this one, in dependency order */
+    private static final String DAEMONCTL_SCRIPT = "/scripts-bundled/daemonctl";
+
+    /** The log pump, which is copied alongside the daemon script when the application's output is pumped */
+    private static final String LOG_PUMP = "/scripts-bundled/logpump.jar";
+
+    /** The control agent, which is copied alongside the daemon script when it is attached to the application */
+    private static final String CONTROL_AGENT = "/scripts-bundled/daemon-agent.jar";
+
+    /** The application configuration file that will be written during the build */
+    private static final String APP_CONFIG_FILE = "app-config.sh";
+
+    /** The name format of the descriptor that daemonctl finds the daemon by */
+    private static final String SERVICE_DESCRIPTOR_FILE = "%s.service";
+
+    /**
+     * The classpath item delimiter is platform-dependant, we need to use an env variable in the value provided by
+     * this plugin, and let the shell script replace it at runtime
+     */
+    private static final String CLASSPATH_DELIMITER = "${CLASSPATH_FROM_CONFIG}";
+
+    /**
+     * One lock per output directory, such that two executions that (mistakenly) share an output directory cannot
+     * interleave their writes within the same JVM.
+     */
+    private static final ConcurrentMap<Path, Object> OUTPUT_DIRECTORY_LOCKS = new ConcurrentHashMap<>();
+
+    private final DaemonDefinition definition;
+
+    private final Path outputDirectory;
+
+    private final Log log;
+
+    /** The project the daemon is generated for, if there is one */
+    private final MavenProject project;
+
+    /** The runtime classpath computed from the project, or null if the daemon should scan its lib directory */
+    private final List<String> runtimeClasspath;
+
+    DaemonGenerator(DaemonDefinition definition, Path outputDirectory, MavenProject project, Log log) {
+        this.definition = definition;
+        this.outputDirectory = outputDirectory.toAbsolutePath().normalize();
+        this.log = log;
+        this.project = project;
+        this.runtimeClasspath = (definition.isGenerateClasspath() && project != null)
+            ? RuntimeClasspath.resolve(project, definition.isIncludeProjectArtifact())
+            : null;
+    }
+
+    /***
+     * Generate the daemon's scripts, skipping the work entirely if the output directory is already up-to-date.
+     *
+     * @throws MojoFailureException If the daemon could not be generated
+     */
+    void generate() throws MojoFailureException {
+        definition.validate();
+
+        if (definition.isGenerateClasspath() && runtimeClasspath == null) {
+            throw new MojoFailureException("A Maven project is required to generate the runtime classpath");
+        }
+
+        Object lock = OUTPUT_DIRECTORY_LOCKS.putIfAbsent(outputDirectory, new Object());
+        if (lock == null) {
+            lock = OUTPUT_DIRECTORY_LOCKS.get(outputDirectory);
+        }
+
+        synchronized (lock) {
+            createOutputDirectory();
+
+            /* Link the application's private Java runtime, if it should have one. This is not one of the generated
+             * files, as it is a directory of binaries alongside the output directory, so it keeps its own stamp of what
+             * it was linked from and is only relinked when that changes. */
+            linkRuntime();
+
+            /* Work out whether anything has changed since the last build. If the parameters and bundled scripts are
+             * the same, and the outputs are exactly as we left them, then there is nothing to do. */
+            String inputsDigest = digestInputs();
+            GenerationManifest previous = GenerationManifest.read(outputDirectory);
+            if (previous != null && previous.isUpToDate(inputsDigest, outputDirectory)) {
+                log.info(String.format("Daemon scripts in '%s' are up-to-date", outputDirectory));
+                return;
+            }
+
+            Map<String, byte[]> outputs = new LinkedHashMap<>();
+
+            /* The common scripts (shared across multiple projects) will be bundled as a resource zip with this jar.
+             * Therefore, we simply need to decompress / extract it to the target directory. */
+            copyCommonScripts(outputs);
+
+            /* Copy the daemon script to the output directory. The user has the ability to state the filename of the
+             * script, thus the output file will have a different name. */
+            copyDaemonScript(outputs);
+
+            /* Describe the daemon to daemonctl, and copy daemonctl itself, such that the daemons installed on a host can
+             * be started and stopped together, each after the services it depends on. */
+            writeServiceDescriptor(outputs);
+
+            /* Copy the log pump alongside the daemon script, if the application's output is to be piped through
+             * it rather than redirected straight to a file. */
+            copyLogPump(outputs);
+
+            /* Copy the control agent alongside the daemon script, if it is to be attached to the application. */
+            copyControlAgent(outputs);
+
+            /* Write the application config out to the shell script that will be sourced by the daemon script when it
+             * is invoked. */
+            writeApplicationConfig(outputs);
+
+            /* Write the runtime classpath computed from the project, in the order it should be searched, so the
+             * daemon script does not have to scan the lib directory at every start. */
+            writeClasspath(outputs);
+
+            /* Fold everything that the daemon script sources into the script itself, if a single file was asked
+             * for. */
+            inlineScripts(outputs);
+
+            /* Only touch the files that differ from what is already on disk, and record what we produced so the next
+             * build can skip straight past this module. */
+            writeOutputs(outputs, previous, inputsDigest);
+        }
+    }
+
+    /***
+     * Link a private Java runtime into the <code>runtime</code> directory alongside the output directory, which the
+     * daemon script finds relative to its base directory, if the daemon is to have one.
+     *
+     * @throws MojoFailureException If the runtime could not be linked
+     */
+    private void linkRuntime() throws MojoFailureException {
+        if (!definition.isJlinkRuntime()) {
+            return;
+        }
+
+        new JlinkRuntime(definition, project, log).link(outputDirectory.resolveSibling(JlinkRuntime.RUNTIME_DIRECTORY));
+    }
+
+    /***
+     * Copy the common scripts from the input directory to the output directory.
+     * <p />
+     *
+     * This is slightly more complicated than you'd hope, as we need to copy the contents to the same paths, not copy
+     * the directory itself. The zip is inflated straight out of the jar (once per plugin classloader), so each entry
+     * can be compared with what is already in the output directory before anything is written.
+     *
+     * @param outputs The files to produce, keyed on their path relative to the output directory
+     * @throws MojoFailureException
+     */
+    private void copyCommonScripts(Map<String, byte[]> outputs) throws MojoFailureException {
+        try {
+            outputs.putAll(BundledScripts.unzip(COMMON_SCRIPTS));
+        } catch (IOException ex) {
+            throw new MojoFailureException("Error whilst extracting scripts file from JAR", ex);
+        }
+    }
+
+    /***
+     * Copy the daemon script from within the current jar onto the filesystem in the target directory. This will also
+     * rename the script, to give it the name specified by the user.
+     *
+     * @param outputs The files to produce, keyed on their path relative to the output directory
+     * @throws MojoFailureException If the file could not be copied over.
+     */
+    private void copyDaemonScript(Map<String, byte[]> outputs) throws MojoFailureException {
+        try {
+            // Copy the main daemon script, using the correct name
+            outputs.put(definition.getScriptName(), BundledScripts.read(DAEMON_SCRIPT));
+
+            // Copy the application-specific extensions to the daemon script
+            String extensionFilename = String.format(DAEMON_SCRIPT_APPLICATION_EXTENSION, definition.getAppType().toLowerCase());
+            outputs.put(Paths.get(extensionFilename).getFileName().toString(), BundledScripts.read(extensionFilename));
+
+        } catch (IOException ex) {
+            throw new MojoFailureException("Could not copy daemon script into place", ex);
+        }
+    }
+
+    /***
+     * Write the descriptor that daemonctl reads to find the daemon, its script and the services it depends on, and copy
+     * daemonctl alongside it.
+     *
+     * @param outputs The files to produce, keyed on their path relative to the output directory
+     * @throws MojoFailureException If daemonctl could not be read
+     */
+    private void writeServiceDescriptor(Map<String, byte[]> outputs) throws MojoFailureException {
+        StringBuilder content = new StringBuilder();
+        content.append(String.format("SERVICE_ID=\"%s\"%n", definition.getServiceId()));
+        content.append(String.format("SERVICE_SCRIPT=\"%s\"%n", definition.getScriptName()));
+        content.append(String.format("SERVICE_DEPENDS_ON=\"%s\"%n", joinIfPresent(definition.getDependsOn())));
+        outputs.put(String.format(SERVICE_DESCRIPTOR_FILE, definition.getScriptName()), content.toString().getBytes(StandardCharsets.UTF_8));
+
+        try {
+            outputs.put(Paths.get(DAEMONCTL_SCRIPT).getFileName().toString(), BundledScripts.read(DAEMONCTL_SCRIPT));
+        } catch (IOException ex) {
+            throw new MojoFailureException("Could not copy daemonctl into place", ex);
+        }
+    }
+
+    /***
+     * Copy the log pump out of the current jar, if the daemon is to use it.
+     *
+     * @param outputs The files to produce, keyed on their path relative to the output directory
+     * @throws MojoFailureException If the log pump could not be read
+     */
+    private void copyLogPump(Map<String, byte[]> outputs) throws MojoFailureException {
+        if (!definition.isLogPump()) {
+            return;
+        }
+
+        try {
+            outputs.put(Paths.get(LOG_PUMP).getFileName().toString(), BundledScripts.read(LOG_PUMP));
+        } catch (IOException ex) {
+            throw new MojoFailureException("Could not copy the log pump into place", ex);
+        }
+    }
+
+    /***
+     * Copy the control agent out of the current jar, if the daemon is to attach it.
+     *
+     * @param outputs The files to produce, keyed on their path relative to the output directory
+     * @throws MojoFailureException If the control agent could not be read
+     */
+    private void copyControlAgent(Map<String, byte[]> outputs) throws MojoFailureException {
+        if (!definition.isControlAgent()) {
+            return;
+        }
+
+        try {
+            outputs.put(Paths.get(CONTROL_AGENT).getFileName().toString(), BundledScripts.read(CONTROL_AGENT));
+        } catch (IOException ex) {
+            throw new MojoFailureException("Could not copy the control agent into place", ex);
+        }
+    }
+
+    /***
+     * The user will have specified a number of parameters as part of the configuration for this Maven plugin. These
+     * simply need transposing into the shell script config file, which will be sourced by the daemon script at
+     * startup.
+     *
+     * @param outputs The files to produce, keyed on their path relative to the output directory
+     * @throws MojoFailureException If the file could not be written
+     */
+    private void writeApplicationConfig(Map<String, byte[]> outputs) throws MojoFailureException {
+        try {
+            // Setup the properties
+            Map<String, String> config = new HashMap<>();
+            config.put("APP_NAME", definition.getApplicationName());
+            config.put("APP_TYPE", definition.getAppType().toLowerCase());
+            config.put("APP_MAINMETHOD", definition.getMainMethod());
+            config.put("APP_JVM_ARGS", processArguments(getIfPresent(definition.getJvmArgs())));
+            config.put("APP_CLI_ARGS", processArguments(getIfPresent(definition.getAppArgs())));
+            config.put("APP_JAVA_HOME", definition.isJlinkRuntime()
+                ? "${DIR_BASE}/" + JlinkRuntime.RUNTIME_DIRECTORY : definition.getJavaHome());
+            config.put("APP_JLINK_RUNTIME", Boolean.toString(definition.isJlinkRuntime()));
+            config.put("APP_EXECUTABLE", definition.getExecutableFile());
+            config.put("APP_CDS", Boolean.toString(definition.isClassDataSharing()));
+            config.put("APP_CONTROL_AGENT", Boolean.toString(definition.isControlAgent()));
+            config.put("APP_JAR_STORE", getIfPresent(definition.getJarStore()));
+            config.put("APP_JVM_PROFILE", getIfPresent(definition.getJvmProfile()));
+            config.put("APP_READY_TCP_PORT", toConfigValue(definition.getReadinessTcpPort()));
+            config.put("APP_READY_HTTP_URL", escapeLiteral(definition.getReadinessHttpUrl()));
+            config.put("APP_READY_LOG_PATTERN", escapeLiteral(definition.getReadinessLogPattern()));
+            config.put("APP_READY_FILE", escapeLiteral(definition.getReadinessFile()));
+            config.put("APP_READY_TIMEOUT", Integer.toString(definition.getReadinessTimeout()));
+            config.put("APP_METRICS_TEXTFILE", Boolean.toString(definition.isMetricsTextfile()));
+            config.put("APP_LOG_PUMP", Boolean.toString(definition.isLogPump()));
+            config.put("APP_LOG_MAX_SIZE", getIfPresent(definition.getLogMaxSize()));
+            config.put("APP_LOG_ROTATE_INTERVAL", getIfPresent(definition.getLogRotateInterval()));
+            config.put("APP_LOG_RETENTION", Integer.toString(definition.getLogRetention()));
+            config.put("APP_LOG_COMPRESS", Boolean.toString(definition.isLogCompress()));
+            config.put("APP_LOG_BUFFER_SIZE", getIfPresent(definition.getLogBufferSize()));
+            config.put("APP_INSTANCES", Integer.toString(definition.getInstances()));
+            config.put("APP_CPU_SETS", joinIfPresent(definition.getCpuSets()));
+            config.put("APP_NUMA_NODES", joinIfPresent(definition.getNumaNodes()));
+            config.put("APP_RESTART_POLICY", definition.getRestartPolicy());
+            config.put("APP_RESTART_DELAY_MS", Integer.toString(definition.getRestartDelay()));
+            config.put("APP_RESTART_MAX_DELAY_MS", Integer.toString(definition.getRestartMaxDelay()));
+            config.put("APP_RESTART_LIMIT", Integer.toString(definition.getRestartLimit()));
+            config.put("APP_RESTART_WINDOW", Integer.toString(definition.getRestartWindow()));
+            config.put("APP_RELOAD_PORT", toConfigValue(definition.getReloadPort()));
+            config.put("APP_DRAIN_SIGNAL", definition.getDrainSignal());
+            config.put("APP_DRAIN_TIMEOUT", Integer.toString(definition.getDrainTimeout()));
+
+            String[] additionalClasspath = definition.getAdditionalClasspath();
+            if (additionalClasspath != null && additionalClasspath.length > 0) {
+                config.put("CLASSPATH_FROM_CONFIG", Joiner.on(CLASSPATH_DELIMITER).join(additionalClasspath));
+            }
+
+            // Then render them as the content of the file
+            StringBuilder content = new StringBuilder();
+            for (Map.Entry<String, String> entry : config.entrySet()) {
+                content.append(String.format("%s=\"%s\"%n", entry.getKey(), entry.getValue()));
+            }
+
+            outputs.put(APP_CONFIG_FILE, content.toString().getBytes(StandardCharsets.UTF_8));
+
+        } catch (Exception ex) {
+            throw new MojoFailureException("Could not create applciation properties file", ex);
+        }
+    }
+
+    /***
+     * Write the runtime classpath, one entry per line and relative to the daemon's base directory, if the daemon has
+     * been configured to use a precomputed classpath.
+     *
+     * @param outputs The files to produce, keyed on their path relative to the output directory
+     */
+    private void writeClasspath(Map<String, byte[]> outputs) {
+        if (runtimeClasspath == null) {
+            return;
+        }
+
+        StringBuilder content = new StringBuilder();
+        for (String entry : runtimeClasspath) {
+            content.append(entry).append('\n');
+        }
+
+        outputs.put(RuntimeClasspath.CLASSPATH_FILE, content.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /***
+     * Replace the daemon script with a self-contained script, into which the common scripts, the application config
+     * and the extension script have been inlined, if the daemon is to be generated as a single file. The inlined files
+     * are then no longer written.
+     *
+     * @param outputs The files to produce, keyed on their path relative to the output directory
+     * @throws MojoFailureException If the scripts could not be inlined
+     */
+    private void inlineScripts(Map<String, byte[]> outputs) throws MojoFailureException {
+        if (!definition.isSingleFile()) {
+            return;
+        }
+
+        SingleFileScript script = new SingleFileScript(outputs,
+            Collections.singletonMap("APP_TYPE", definition.getAppType().toLowerCase()));
+        outputs.put(definition.getScriptName(), script.inline(definition.getScriptName()));
+        String daemonctl = Paths.get(DAEMONCTL_SCRIPT).getFileName().toString();
+        outputs.put(daemonctl, script.inline(daemonctl));
+        outputs.keySet().removeAll(script.getInlinedFiles());
+    }
+
+    /***
+     * Write each of the generated files into the output directory, skipping any that already have the right content.
+     * Files that a previous build generated, but which are no longer part of the output (e.g. the extension script of
+     * a different application type) are removed.
+     *
+     * @param outputs The files to produce, keyed on their path relative to the output directory
+     * @param previous The manifest left by the previous build, or null if there was none
+     * @param inputsDigest The digest of the inputs for this build
+     * @throws MojoFailureException If the files or the manifest could not be written
+     */
+    private void writeOutputs(Map<String, byte[]> outputs, GenerationManifest previous, String inputsDigest) throws MojoFailureException {
+        GenerationManifest manifest = new GenerationManifest(inputsDigest);
+        int written = 0;
+
+        try {
+            for (Map.Entry<String, byte[]> output : outputs.entrySet()) {
+                String relativePath = output.getKey();
+                byte[] content = output.getValue();
+                String contentDigest = BundledScripts.DIGEST.hashBytes(content).toString();
+                Path file = outputDirectory.resolve(relativePath);
+
+                boolean unchanged = (previous != null && previous.isUnchanged(relativePath, contentDigest, outputDirectory))
+                    || (Files.isRegularFile(file) && Arrays.equals(Files.readAllBytes(file), content));
+
+                if (unchanged) {
+                    log.debug(String.format("Daemon file '%s' is unchanged", file));
+                } else {
+                    Files.createDirectories(file.getParent());
+                    writeFile(file, content);
+                    written++;
+                }
+
+                manifest.record(relativePath, contentDigest, file);
+            }
+
+            if (previous != null) {
+                for (String relativePath : previous.getFiles()) {
+                    if (!outputs.containsKey(relativePath)) {
+                        log.debug(String.format("Removing stale daemon file '%s'", relativePath));
+                        Files.deleteIfExists(outputDirectory.resolve(relativePath));
+                    }
+                }
+            }
+
+            manifest.write(outputDirectory);
+        } catch (IOException ex) {
+            throw new MojoFailureException(String.format("Could not write daemon files to '%s'", outputDirectory), ex);
+        }
+
+        log.info(String.format("Wrote %d of %d daemon files to '%s'", written, outputs.size(), outputDirectory));
+    }
+
+    /***
+     * Produce a digest that covers everything the generated files depend upon: the plugin parameters and the content
+     * of the bundled scripts. If this is unchanged since the last build, the outputs will be too.
+     *
+     * @return The hex digest of all the inputs
+     * @throws MojoFailureException If a bundled resource could not be read
+     */
+    private String digestInputs() throws MojoFailureException {
+        Hasher hasher = BundledScripts.DIGEST.newHasher();
+        for (Map.Entry<String, String> input : describeInputs().entrySet()) {
+            hasher.putString(input.getKey(), StandardCharsets.UTF_8).putByte((byte) 0);
+            hasher.putString(getIfPresent(input.getValue()), StandardCharsets.UTF_8).putByte((byte) 0);
+        }
+        return hasher.hash().toString();
+    }
+
+    /***
+     * Describe every input to the generation, as a sorted map of name to value. Any new parameter that influences the
+     * generated files must be added here, otherwise changing it will not cause the files to be regenerated.
+     *
+     * @return The inputs, keyed on their name
+     * @throws MojoFailureException If a bundled resource could not be read
+     */
+    private SortedMap<String, String> describeInputs() throws MojoFailureException {
+        SortedMap<String, String> inputs = new TreeMap<>();
+        String[] additionalClasspath = definition.getAdditionalClasspath();
+        inputs.put("applicationName", definition.getApplicationName());
+        inputs.put("scriptName", definition.getScriptName());
+        inputs.put("mainMethod", definition.getMainMethod());
+        inputs.put("executableFile", definition.getExecutableFile());
+        inputs.put("appType", definition.getAppType());
+        inputs.put("jvmArgs", definition.getJvmArgs());
+        inputs.put("appArgs", definition.getAppArgs());
+        inputs.put("classpath", additionalClasspath == null ? null : Joiner.on(CLASSPATH_DELIMITER).join(additionalClasspath));
+        inputs.put("javaHome", definition.getJavaHome());
+        inputs.put("jlinkRuntime", Boolean.toString(definition.isJlinkRuntime()));
+        inputs.put("classDataSharing", Boolean.toString(definition.isClassDataSharing()));
+        inputs.put("controlAgent", Boolean.toString(definition.isControlAgent()));
+        inputs.put("jarStore", definition.getJarStore());
+        inputs.put("jvmProfile", definition.getJvmProfile());
+        inputs.put("readinessTcpPort", toConfigValue(definition.getReadinessTcpPort()));
+        inputs.put("readinessHttpUrl", definition.getReadinessHttpUrl());
+        inputs.put("readinessLogPattern", definition.getReadinessLogPattern());
+        inputs.put("readinessFile", definition.getReadinessFile());
+        inputs.put("readinessTimeout", Integer.toString(definition.getReadinessTimeout()));
+        inputs.put("metricsTextfile", Boolean.toString(definition.isMetricsTextfile()));
+        inputs.put("logPump", Boolean.toString(definition.isLogPump()));
+        inputs.put("logMaxSize", definition.getLogMaxSize());
+        inputs.put("logRotateInterval", definition.getLogRotateInterval());
+        inputs.put("logRetention", Integer.toString(definition.getLogRetention()));
+        inputs.put("logCompress", Boolean.toString(definition.isLogCompress()));
+        inputs.put("logBufferSize", definition.getLogBufferSize());
+        inputs.put("instances", Integer.toString(definition.getInstances()));
+        inputs.put("cpuSets", joinIfPresent(definition.getCpuSets()));
+        inputs.put("numaNodes", joinIfPresent(definition.getNumaNodes()));
+        inputs.put("singleFile", Boolean.toString(definition.isSingleFile()));
+        inputs.put("restartPolicy", definition.getRestartPolicy());
+        inputs.put("restartDelay", Integer.toString(definition.getRestartDelay()));
+        inputs.put("restartMaxDelay", Integer.toString(definition.getRestartMaxDelay()));
+        inputs.put("restartLimit", Integer.toString(definition.getRestartLimit()));
+        inputs.put("restartWindow", Integer.toString(definition.getRestartWindow()));
+        inputs.put("reloadPort", toConfigValue(definition.getReloadPort()));
+        inputs.put("drainSignal", definition.getDrainSignal());
+        inputs.put("drainTimeout", Integer.toString(definition.getDrainTimeout()));
+        inputs.put("serviceId", definition.getServiceId());
+        inputs.put("dependsOn", joinIfPresent(definition.getDependsOn()));
+        inputs.put("runtimeClasspath", runtimeClasspath == null ? null : Joiner.on('\n').join(runtimeClasspath));
+
+        String extensionFilename = String.format(DAEMON_SCRIPT_APPLICATION_EXTENSION, definition.getAppType().toLowerCase());
+        try {
+            for (String resource : Arrays.asList(COMMON_SCRIPTS, DAEMON_SCRIPT, DAEMONCTL_SCRIPT, extensionFilename)) {
+                inputs.put("resource:" + resource, BundledScripts.digest(resource));
+            }
+            if (definition.isLogPump()) {
+                inputs.put("resource:" + LOG_PUMP, BundledScripts.digest(LOG_PUMP));
+            }
+            if (definition.isControlAgent()) {
+                inputs.put("resource:" + CONTROL_AGENT, BundledScripts.digest(CONTROL_AGENT));
+            }
+        } catch (IOException ex) {
+            throw new MojoFailureException("Could not read the bundled scripts from JAR", ex);
+        }
+
+        return inputs;
+    }
+
+    /**
+     * Strip breaking whitespace from JVM/program arguments and fail on double quotes. Note that this method will also
+     * trim additional leading/trailing whitespace from arguments.
+     *
+     * @param arguments Program or JVM arguments as a string from the POM
+     * @return processed arguments with line breaks removed
+     * @throws org.apache.maven.plugin.MojoFailureException if a double quote character is encountered
+     */
+    static String processArguments(String arguments) throws MojoFailureException {
+        if (arguments.contains("\"")) {
+            throw new MojoFailureException(
+                String.format("Double quotes are not supported in arguments - please use single quotes instead. " +
+                    "Offending arguments string: %s", arguments));
+        }
+
+        Iterable<String> parts = Splitter.on(CharMatcher.BREAKING_WHITESPACE)
+            .trimResults(CharMatcher.WHITESPACE)
+            .omitEmptyStrings()
+            .split(arguments);
+
+        String processed = Joiner.on(" ").join(parts);
+        return processed;
+    }
+
+    /***
+     * Maven is a bit daft and if the string is null it will assign it the value "null" so if we get the null string, we
+     * will using the empty string in its place.
+     *
+     * @param st The String to check
+     * @return String Either an empty string of the original string
+     */
+    static String getIfPresent(String st) {
+        return (st == null) ? StringUtils.EMPTY : st;
+    }
+
+    /***
+     * Render an optional list of values for the config file as a space separated list, where an absent list is written
+     * as the empty string.
+     */
+    static String joinIfPresent(String[] values) {
+        return (values == null) ? StringUtils.EMPTY : Joiner.on(" ").join(values);
+    }
+
+    /***
+     * Render an optional value for the config file, where an absent value is written as the empty string.
+     *
+     * @param value The value, which may be null
+     * @return The value as a string, or the empty string
+     */
+    static String toConfigValue(Object value) {
+        return (value == null) ? StringUtils.EMPTY : value.toString();
+    }
+
+    /***
+     * Escape a value that must reach the daemon script verbatim, such as a regular expression. Config values are
+     * written inside double quotes, where the shell would otherwise expand '$', '`' and backslash sequences.
+     *
+     * @param value The value, which may be null
+     * @return The escaped value, or the empty string
+     */
+    static String escapeLiteral(String value) {
+        if (value == null) {
+            return StringUtils.EMPTY;
+        }
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("$", "\\$").replace("`", "\\`");
+    }
+
+    /***
+     * Ensure that the output directory is present and valid.
+     *
+     * @throws MojoFailureException If the directory could not be created
+     */
+    private void createOutputDirectory() throws MojoFailureException {
+        if (!Files.exists(outputDirectory)) {
+            try {
+                Files.createDirectories(outputDirectory);
+            } catch (IOException ex) {
+                throw new MojoFailureException(String.format("Cannot create directory '%s'", outputDirectory), ex);
+            }
+        }
+    }
+
+    /***
+     * Write the given content to a file on the filesystem, replacing whatever was there
+     *
+     * @param filesystemPath The path to write the file to
+     * @param content The content of the file
+     * @throws IOException If the file could not be written
+     */
+    private static void writeFile(Path filesystemPath, byte[] content) throws IOException {
+        try (FileChannel channel = FileChannel.open(filesystemPath,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.wrap(content);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+    }
+
+}
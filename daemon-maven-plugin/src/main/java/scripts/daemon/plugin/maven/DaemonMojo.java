@@ -1,36 +1,20 @@
 package scripts.daemon.plugin.maven;
 
-import java.io.FileOutputStream;
-import java.io.FileWriter;
-import java.io.IOException;
-import java.io.InputStream;
-import java.nio.charset.Charset;
-import java.nio.file.Files;
-import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.time.LocalDateTime;
-import java.util.Arrays;
-import java.util.HashMap;
-import java.util.Map;
-
-import com.google.common.base.CharMatcher;
-import com.google.common.base.Joiner;
-import com.google.common.base.Splitter;
+
 import org.apache.commons.lang3.StringUtils;
 import org.apache.maven.plugin.AbstractMojo;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
 import org.apache.maven.plugins.annotations.Mojo;
 import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.plugins.annotations.ResolutionScope;
 import org.apache.maven.project.MavenProject;
-import org.codehaus.plexus.archiver.zip.ZipUnArchiver;
-import org.codehaus.plexus.logging.console.ConsoleLogger;
-import org.codehaus.plexus.util.IOUtil;
 
 /***
  * Maven step that will generate a customised Daemon application script
  */
-@Mojo(name = "generate-daemon")
+@Mojo(name = "generate-daemon", threadSafe = true, requiresDependencyResolution = ResolutionScope.RUNTIME)
 public class DaemonMojo extends AbstractMojo {
 
     /** The directory in which to store the daemon files */
@@ -61,6 +45,15 @@ public class DaemonMojo extends AbstractMojo {
     @Parameter(property = "jvmArgs", defaultValue = "")
     private String jvmArgs;
 
+    /**
+     * The ergonomics profile to size the JVM with at launch, from the CPUs and memory of the host (honouring container
+     * limits and CPU pinning): <code>throughput</code>, <code>low-latency</code> or <code>small-footprint</code>. The
+     * profile chooses the heap size, collector, GC threads, large pages and pre-touching; {@link #jvmArgs} are applied
+     * on top of it. The JVM's effective flags are printed to the application log.
+     */
+    @Parameter(property = PARAM_JVM_PROFILE, required = false)
+    private String jvmProfile;
+
     /** The arguments to pass to the application's main method */
     @Parameter(property = "appArgs", defaultValue = "")
     private String appArgs;
@@ -69,58 +62,270 @@ public class DaemonMojo extends AbstractMojo {
     @Parameter(property = "classpath", required = false)
     private String[] additionalClasspath;
 
-    /** The java home directory to use to execute the code */
+    /** The java home directory to use to execute the code. Not needed when {@link #jlinkRuntime} is set */
     @Parameter(property = PARAM_JAVA_HOME, required = false)
     private String javaHome;
 
-    @Parameter(defaultValue = "${project}", readonly = true, required = true)
-    private MavenProject mavenProject;
+    /**
+     * Whether to link a private Java runtime for the application, in place of using a JDK installed on the host. The
+     * modules the project's runtime classpath needs are found with jdeps, and jlink builds an image of just those
+     * (stripped of debug information) into the <code>runtime</code> directory alongside the output directory, i.e.
+     * next to <code>bin</code> and <code>lib</code>. The image must be packaged with the daemon.
+     */
+    @Parameter(property = PARAM_JLINK_RUNTIME, defaultValue = "false")
+    private boolean jlinkRuntime;
+
+    /**
+     * Further modules to link into the runtime, which jdeps cannot see because they are only reached through
+     * reflection or a service loader, e.g. <code>jdk.crypto.ec</code> or <code>jdk.localedata</code>
+     */
+    @Parameter(property = "jlinkModules", required = false)
+    private String[] jlinkModules;
+
+    /** Whether to compress the linked runtime, making it smaller on disk at the cost of a slightly slower start */
+    @Parameter(property = "jlinkCompress", defaultValue = "false")
+    private boolean jlinkCompress;
+
+    /**
+     * The JDK to link the runtime from, which decides the Java version the application runs on. Defaults to the JDK
+     * that is running the build.
+     */
+    @Parameter(property = "jlinkJdkHome", required = false)
+    private String jlinkJdkHome;
+
+    /**
+     * Whether to compute the runtime classpath from the project's dependencies at build time. The daemon script will
+     * then use it in place of scanning the lib directory at every start, for as long as the lib directory matches.
+     */
+    @Parameter(property = "generateClasspath", defaultValue = "false")
+    private boolean generateClasspath;
+
+    /** Whether the project's own jar is part of the generated classpath */
+    @Parameter(property = "includeProjectArtifact", defaultValue = "true")
+    private boolean includeProjectArtifact;
+
+    /**
+     * Whether to generate the daemon as a single, self-contained script. The common scripts, the application config
+     * and the functions of the chosen application type are inlined into the daemon script, in place of being written
+     * alongside it and sourced at every invocation.
+     */
+    @Parameter(property = "singleFile", defaultValue = "false")
+    private boolean singleFile;
+
+    /**
+     * Whether a JAVA application should use Application Class-Data Sharing. The first start (or any start after the
+     * classpath has changed) dumps an archive of the loaded classes at exit, which later starts map in place of
+     * loading and verifying the classes again. Requires the application's JVM to be Java 13 or later.
+     */
+    @Parameter(property = PARAM_CLASS_DATA_SHARING, defaultValue = "false")
+    private boolean classDataSharing;
+
+    /**
+     * Whether to attach the control agent to a JAVA application. The agent answers the daemon script from inside the
+     * JVM, over a Unix-domain socket in the <code>var</code> directory, so status checks, thread dumps
+     * (<code>thread-dump</code>), heap histograms (<code>heap-histo</code>), GC figures (<code>gc-stats</code>) and
+     * stop no longer start a JDK tool's JVM to ask. The agent needs Java 16 or later, and a client for the socket on
+     * the host (socat, or a netcat with -U); without either, the script falls back to the JDK tools.
+     */
+    @Parameter(property = PARAM_CONTROL_AGENT, defaultValue = "false")
+    private boolean controlAgent;
+
+    /**
+     * A directory shared by the JAVA daemons on a host, to keep their jars in once each, named by the SHA-256 of their
+     * contents. At start the jars in <code>lib</code> are moved into the store and replaced with links to it, so
+     * daemons built on the same libraries read them from the same files, sharing their pages in the page cache and
+     * their AppCDS archives' checks. Jars that no install links to, and no running process was launched with, are
+     * deleted by <code>jar-store gc</code>.
+     */
+    @Parameter(property = PARAM_JAR_STORE, required = false)
+    private String jarStore;
+
+    /**
+     * A local TCP port that must accept connections before the application is considered ready. When any readiness
+     * probe is configured, start and restart wait for every probe to pass, rather than sleeping for a fixed time.
+     */
+    @Parameter(property = "readinessTcpPort", required = false)
+    private Integer readinessTcpPort;
 
-    /** The directory that contains the common scripts, bundled inside the jar */
-    private static final String COMMON_SCRIPTS = "/scripts-bundled/common-scripts.zip";
+    /** An HTTP URL that must respond with a 2xx status before the application is considered ready */
+    @Parameter(property = "readinessHttpUrl", required = false)
+    private String readinessHttpUrl;
 
-    /** The daemon script file, which will be copied-over and renamed during build */
-    private static final String DAEMON_SCRIPT = "/scripts-bundled/daemon";
+    /** A regular expression (grep -E) that must appear in the application's output before it is considered ready */
+    @Parameter(property = "readinessLogPattern", required = false)
+    private String readinessLogPattern;
 
-    /** The name format of the extension script which will support the given application type */
-    private static final String DAEMON_SCRIPT_APPLICATION_EXTENSION = "/scripts-bundled/daemon-%s";
+    /**
+     * A file, relative to the daemon's base directory, that the application writes once it is ready. The path is
+     * passed to the application in the DAEMON_READY_FILE environment variable.
+     */
+    @Parameter(property = "readinessFile", required = false)
+    private String readinessFile;
+
+    /** The number of seconds to wait for the readiness probes to pass, before the start is reported as failed */
+    @Parameter(property = PARAM_READINESS_TIMEOUT, defaultValue = "60")
+    private int readinessTimeout = 60;
+
+    /**
+     * Whether the status and metrics commands should also write the application's metrics to
+     * <code>var/metrics.prom</code>, for the Prometheus node exporter's textfile collector.
+     */
+    @Parameter(property = "metricsTextfile", defaultValue = "false")
+    private boolean metricsTextfile;
+
+    /**
+     * Whether to pipe the application's output through the log pump, rather than redirecting it straight to
+     * <code>logs/nohup.log</code>. The pump buffers the output in memory and writes it in batches to a log that is
+     * rotated on size and time, so the application is never blocked by a slow disk: if the buffer fills, lines are
+     * dropped and counted instead. The pump runs on the application's JVM, or on the java on the path for
+     * executables; without one, the output is redirected as before.
+     */
+    @Parameter(property = "logPump", defaultValue = "false")
+    private boolean logPump;
+
+    /** The size at which the log is rotated, e.g. 100m, or 0 to rotate on time alone */
+    @Parameter(property = PARAM_LOG_MAX_SIZE, defaultValue = "100m")
+    private String logMaxSize = "100m";
+
+    /** The interval at which the log is rotated, e.g. 1h or 1d, or blank to rotate on size alone */
+    @Parameter(property = PARAM_LOG_ROTATE_INTERVAL, defaultValue = "")
+    private String logRotateInterval;
+
+    /** The number of rotated logs to keep, or 0 to keep them all */
+    @Parameter(property = PARAM_LOG_RETENTION, defaultValue = "10")
+    private int logRetention = 10;
+
+    /** Whether rotated logs are gzipped, which happens in the background */
+    @Parameter(property = "logCompress", defaultValue = "true")
+    private boolean logCompress = true;
+
+    /** The size of the in-memory buffer between the application and the log, e.g. 8m */
+    @Parameter(property = PARAM_LOG_BUFFER_SIZE, defaultValue = "8m")
+    private String logBufferSize = "8m";
+
+    /**
+     * The number of instances of the application to run from the one install. Each instance has its own PID file and
+     * log (<code>var/pid-N</code> and <code>logs/nohup-N.log</code>), is told its index in the DAEMON_INSTANCE
+     * environment variable (and, for JAVA, the <code>daemon.instance</code> system property), and waits on a readiness
+     * port - and readiness URL port, which must then be given - offset by its index. Every command acts on all of the instances, or on the one given with
+     * <code>--instance N</code>; restart rolls through them one at a time.
+     */
+    @Parameter(property = PARAM_INSTANCES, defaultValue = "1")
+    private int instances = 1;
 
-    /** The application configuration file that will be written during the build */
-    private static final String APP_CONFIG_FILE = "app-config.sh";
+    /**
+     * The CPU sets to pin the instances to with taskset, e.g. <code>0-15</code>, one per instance (taken in turn), or
+     * <code>auto</code> to divide the online CPUs evenly between the instances
+     */
+    @Parameter(property = PARAM_CPU_SETS, required = false)
+    private String[] cpuSets;
+
+    /**
+     * The NUMA nodes to bind the instances' CPUs and memory to with numactl, one per instance (taken in turn), or
+     * <code>auto</code> to spread the instances across the nodes of the host
+     */
+    @Parameter(property = "numaNodes", required = false)
+    private String[] numaNodes;
 
     /**
-     * The classpath item delimiter is platform-dependant, we need to use an env variable in the value provided by
-     * this plugin, and let the shell script replace it at runtime
+     * Whether to run the application under a supervisor, which restarts it when it exits: <code>never</code> (the
+     * default, no supervisor), <code>on-failure</code> (when it exits with a non-zero code or is killed) or
+     * <code>always</code>. The supervisor is the application's parent, so it learns of the exit straight away, rather
+     * than when someone next looks at the status. Restart counts and exit codes are recorded in the <code>var</code>
+     * directory, and reported by the status and metrics commands.
      */
-    private static final String CLASSPATH_DELIMITER = "${CLASSPATH_FROM_CONFIG}";
+    @Parameter(property = PARAM_RESTART_POLICY, defaultValue = "never")
+    private String restartPolicy = "never";
+
+    /** The milliseconds to wait before the first restart. The wait doubles with each restart after that */
+    @Parameter(property = PARAM_RESTART_DELAY, defaultValue = "100")
+    private int restartDelay = 100;
+
+    /** The most milliseconds to wait before a restart */
+    @Parameter(property = "restartMaxDelay", defaultValue = "30000")
+    private int restartMaxDelay = 30000;
+
+    /**
+     * The most restarts within {@link #restartWindow} seconds. An application that needs more is crash-looping, and
+     * is left stopped.
+     */
+    @Parameter(property = PARAM_RESTART_LIMIT, defaultValue = "5")
+    private int restartLimit = 5;
+
+    /**
+     * The seconds over which restarts are counted towards {@link #restartLimit}. An application that stays up for this
+     * long is restarted after {@link #restartDelay} again.
+     */
+    @Parameter(property = "restartWindow", defaultValue = "60")
+    private int restartWindow = 60;
+
+    /**
+     * The port that the new process of a reload is started on (in DAEMON_READY_PORT) and checked for readiness on,
+     * whilst the old process still holds {@link #readinessTcpPort}. The next reload moves the process back to the
+     * readiness port. Not needed where the processes share the port through SO_REUSEPORT.
+     */
+    @Parameter(property = PARAM_RELOAD_PORT, required = false)
+    private Integer reloadPort;
+
+    /** The signal that tells the old process of a reload to finish what it is doing and exit, e.g. TERM or USR2 */
+    @Parameter(property = PARAM_DRAIN_SIGNAL, defaultValue = "TERM")
+    private String drainSignal = "TERM";
+
+    /** The seconds that the old process of a reload has to drain, before it is killed */
+    @Parameter(property = PARAM_DRAIN_TIMEOUT, defaultValue = "30")
+    private int drainTimeout = 30;
+
+    /**
+     * The name that other daemons on the host know this one by, in their {@link #dependsOn}. Defaults to the
+     * script's name.
+     */
+    @Parameter(property = PARAM_SERVICE_ID, required = false)
+    private String serviceId;
+
+    /**
+     * The services that must be running before this one is started, and which are only stopped once this one has
+     * been, by their service IDs. The generated <code>daemonctl</code> script starts and stops every daemon installed
+     * alongside this one in that order, running independent daemons in parallel.
+     */
+    @Parameter(property = PARAM_DEPENDS_ON, required = false)
+    private String[] dependsOn;
+
+    @Parameter(defaultValue = "${project}", readonly = true, required = true)
+    private MavenProject mavenProject;
 
     /** Definition of parameter names expected in the POM file */
     public static final String
             PARAM_APP_TYPE = "appType",
             PARAM_EXECUTABLE = "executableFile",
             PARAM_MAIN_METHOD = "mainMethod",
-            PARAM_JAVA_HOME = "javaHome";
+            PARAM_JAVA_HOME = "javaHome",
+            PARAM_JLINK_RUNTIME = "jlinkRuntime",
+            PARAM_CLASS_DATA_SHARING = "classDataSharing",
+            PARAM_CONTROL_AGENT = "controlAgent",
+            PARAM_JAR_STORE = "jarStore",
+            PARAM_JVM_PROFILE = "jvmProfile",
+            PARAM_READINESS_TIMEOUT = "readinessTimeout",
+            PARAM_LOG_MAX_SIZE = "logMaxSize",
+            PARAM_LOG_ROTATE_INTERVAL = "logRotateInterval",
+            PARAM_LOG_RETENTION = "logRetention",
+            PARAM_LOG_BUFFER_SIZE = "logBufferSize",
+            PARAM_INSTANCES = "instances",
+            PARAM_CPU_SETS = "cpuSets",
+            PARAM_RESTART_POLICY = "restartPolicy",
+            PARAM_RESTART_DELAY = "restartDelay",
+            PARAM_RESTART_LIMIT = "restartLimit",
+            PARAM_RELOAD_PORT = "reloadPort",
+            PARAM_DRAIN_SIGNAL = "drainSignal",
+            PARAM_DRAIN_TIMEOUT = "drainTimeout",
+            PARAM_SERVICE_ID = "serviceId",
+            PARAM_DEPENDS_ON = "dependsOn";
 
     @Override
     public void execute() throws MojoExecutionException, MojoFailureException {
-        Path outputDirectory = createOutputDirectory();
-
         validateParams();
 
         try {
-
-            /* The common scripts (shared across multiple projects) will be bundled as a resource zip with this jar.
-             * Therefore, we simply need to decompress / extract it to the target directory. */
-            copyCommonScripts(outputDirectory);
-
-            /* Copy the daemon script to the output directory. The user has the ability to state the filename of the
-             * script, thus the output file will have a different name. */
-            copyDaemonScript(outputDirectory);
-
-            /* Write the application config out to the shell script that will be sourced by the daemon script when it
-             * is invoked. */
-            writeApplicationConfig(outputDirectory);
-
+            new DaemonGenerator(toDefinition(), Paths.get(outputDirectory), mavenProject, getLog()).generate();
         } catch (MojoFailureException ex) {
             getLog().error(String.format("Error producing daemon: %s", ex.getMessage()), ex);
             throw ex;
@@ -129,90 +334,12 @@ public class DaemonMojo extends AbstractMojo {
 
     /***
      * The daemon script can launch either Java applications or generic executables. Here we need to validate that the
-     * {@link #appType} provided is a supported value.
-     * <p />
+     * {@link #appType} provided is a supported value, along with the parameters that the type requires.
      *
-     * NOTE: This is a new parameter, but we're going to make it mandatory. Therefore, we need a nice error if it is not
-     * present, as downstream consumers will run into this problem.
+     * @see DaemonDefinition#validate()
      */
     protected void validateParams() {
-        ApplicationType parsedAppType = null;
-
-        if (StringUtils.isNoneBlank(appType)) {
-            try {
-                parsedAppType = ApplicationType.valueOf(appType);
-            } catch (IllegalArgumentException ex) {
-                throw new IllegalArgumentException(String.format(
-                    "The '%s' value provided for property %s is not supported. Supported types: %s",
-                    appType, PARAM_APP_TYPE, Arrays.toString(ApplicationType.values())), ex);
-            }
-        } else {
-            throw new IllegalArgumentException(String.format(
-                "No value provided for property %s. Supported types: %s", PARAM_APP_TYPE, Arrays.toString(ApplicationType.values())));
-        }
-
-        switch (parsedAppType) {
-            case EXECUTABLE:
-                if (StringUtils.isBlank(executableFile)) {
-                    throw new IllegalArgumentException(String.format("Parameter '%s' is not optional when application type is %s",
-                        PARAM_EXECUTABLE, ApplicationType.EXECUTABLE));
-                }
-                break;
-            case JAVA:
-                if (StringUtils.isBlank(javaHome)) {
-                    throw new IllegalArgumentException(String.format("Parameter '%s' is not optional when application type is %s",
-                        PARAM_JAVA_HOME, ApplicationType.JAVA));
-                }
-
-                if (StringUtils.isBlank(mainMethod)) {
-                    throw new IllegalArgumentException(String.format("Parameter '%s' is not optional when application type is %s",
-                        PARAM_MAIN_METHOD, ApplicationType.JAVA));
-                }
-                break;
-            default:
-                /* NO-OP: No validation to do? */
-                break;
-        }
-    }
-
-    /***
-     * Copy the common scripts from the input directory to the output directory.
-     * <p />
-     *
-     * This is slightly more complicated than you'd hope, as we need to copy the contents to the same paths, not copy
-     * the directory itself.
-     *
-     * @param outputDirectory The directory to copy the files to
-     * @throws MojoFailureException
-     */
-    private void copyCommonScripts(Path outputDirectory) throws MojoFailureException {
-
-        /* The plexus ZipUnArchiver only works with java Files. Therefore, we need to copy zip over to a temp file
-         * outside of the jar before we can extract it. */
-
-        Path tempFile = null;
-        try {
-            tempFile = Files.createTempFile("common-scripts", ".zip");
-
-            copyFromJarToFileSystem(COMMON_SCRIPTS, tempFile);
-
-            // Actually perform the unzip
-            ZipUnArchiver unzipper = new ZipUnArchiver(tempFile.toFile());
-            unzipper.enableLogging(new ConsoleLogger());
-            unzipper.setDestDirectory(outputDirectory.toFile());
-            unzipper.extract();
-        } catch (IOException ex) {
-            throw new MojoFailureException("Error whilst extracting scripts file from JAR", ex);
-        } finally {
-            try {
-                // Make sure we tidy-up... remove the temp file
-                if (tempFile != null) {
-                    Files.delete(tempFile);
-                }
-            } catch (IOException ex) {
-                throw new MojoFailureException("Could not clean-up temp file", ex);
-            }
-        }
+        toDefinition().validate();
     }
 
     /**
@@ -227,66 +354,6 @@ public class DaemonMojo extends AbstractMojo {
         return userForEnvironment;
     }
 
-    /***
-     * Copy the daemon script from within the current jar onto the filesystem in the target directory. This will also
-     * rename the script, to give it the name specified by the user.
-     *
-     * @param outputDirectory The output directory, to copy the file into
-     * @throws MojoFailureException If the file could not be copied over.
-     */
-    private void copyDaemonScript(Path outputDirectory) throws MojoFailureException {
-        try {
-            // Copy the main daemon script, using the correct name
-            copyFromJarToFileSystem(DAEMON_SCRIPT, outputDirectory.resolve(scriptName));
-
-            // Copy the application-specific extensions to the daemon script
-            String extensionFilename = String.format(DAEMON_SCRIPT_APPLICATION_EXTENSION, appType.toString().toLowerCase());
-            copyFromJarToFileSystem(extensionFilename,
-                outputDirectory.resolve(Paths.get(extensionFilename).getFileName()));
-
-        } catch (IOException ex) {
-            throw new MojoFailureException("Could not copy daemon script into place", ex);
-        }
-    }
-
-    /***
-     * The user will have specified a number of parameters as part of the configuration for this Maven plugin. These
-     * simply need transposing into the shell script config file, which will be sourced by the daemon script at
-     * startup.
-     *
-     * @param outputDirectory The output directory, in which the config file should be written.
-     * @throws MojoFailureException If the file could not be written
-     */
-    private void writeApplicationConfig(Path outputDirectory) throws MojoFailureException {
-        FileWriter propertyWriter = null;
-        try {
-            // Setup the properties
-            Map<String, String> config = new HashMap<>();
-            config.put("APP_NAME", applicationName);
-            config.put("APP_TYPE", appType.toLowerCase());
-            config.put("APP_MAINMETHOD", mainMethod);
-            config.put("APP_JVM_ARGS", processArguments(getIfPresent(jvmArgs)));
-            config.put("APP_CLI_ARGS", processArguments(getIfPresent(appArgs)));
-            config.put("APP_JAVA_HOME", javaHome);
-            config.put("APP_EXECUTABLE", executableFile);
-
-            if (additionalClasspath != null && additionalClasspath.length > 0) {
-                config.put("CLASSPATH_FROM_CONFIG", Joiner.on(CLASSPATH_DELIMITER).join(additionalClasspath));
-            }
-
-            // Then write them to a file
-            propertyWriter = new FileWriter(Paths.get(this.outputDirectory).resolve(APP_CONFIG_FILE).toFile());
-            for (Map.Entry<String, String> entry : config.entrySet()) {
-                propertyWriter.write(String.format("%s=\"%s\"%n", entry.getKey(), entry.getValue()));
-            }
-
-        } catch (Exception ex) {
-            throw new MojoFailureException("Could not create applciation properties file", ex);
-        } finally {
-            IOUtil.close(propertyWriter);
-        }
-    }
-
     /**
      * Strip breaking whitespace from JVM/program arguments and fail on double quotes. Note that this method will also
      * trim additional leading/trailing whitespace from arguments.
@@ -296,83 +363,63 @@ public class DaemonMojo extends AbstractMojo {
      * @throws org.apache.maven.plugin.MojoFailureException if a double quote character is encountered
      */
     protected String processArguments(String arguments) throws MojoFailureException {
-        if (arguments.contains("\"")) {
-            throw new MojoFailureException(
-                String.format("Double quotes are not supported in arguments - please use single quotes instead. " +
-                    "Offending arguments string: %s", arguments));
-        }
-
-        Iterable<String> parts = Splitter.on(CharMatcher.BREAKING_WHITESPACE)
-            .trimResults(CharMatcher.WHITESPACE)
-            .omitEmptyStrings()
-            .split(arguments);
-
-        String processed = Joiner.on(" ").join(parts);
-        return processed;
+        return DaemonGenerator.processArguments(arguments);
     }
 
     /***
-     * Maven is a bit daft and if the string is null it will assign it the value "null" so if we get the null string, we
-     * will using the empty string in its place.
+     * Gather the parameters of this goal into the definition of the single daemon that it generates.
      *
-     * @param st The String to check
-     * @return String Either an empty string of the original string
+     * @return The daemon definition
      */
-    private String getIfPresent(String st) {
-        return (st == null) ? StringUtils.EMPTY : st;
-    }
-
-    /***
-     * Ensure that the output directory is present and valid.
-     *
-     * @return The output directory that has been created (as needed)
-     * @throws MojoFailureException If the directory could not be created
-     */
-    private Path createOutputDirectory() throws MojoFailureException {
-        Path directory = Paths.get(outputDirectory);
-
-        if (!Files.exists(directory)) {
-            try {
-                Files.createDirectories(directory);
-            } catch (IOException ex) {
-                throw new MojoFailureException(String.format("Cannot create directory '%s'", outputDirectory), ex);
-            }
-        }
-
-        return directory;
-    }
-
-    /***
-     * Copy the given file from inside the current JAR onto the filesystem
-     *
-     * @param jarPath The file path, locating the resource within the JAR
-     * @param filesystemPath The path to extract the file to
-     * @throws IOException If the file could not be extracted
-     */
-    private static final void copyFromJarToFileSystem(String jarPath, Path filesystemPath) throws IOException {
-        InputStream jarFileStream = null;
-        FileOutputStream outputStream = null;
-
-        try {
-
-            jarFileStream = DaemonMojo.class.getResourceAsStream(jarPath);
-            if (jarFileStream == null) {
-                throw new IllegalArgumentException(String.format("File '%s' could not be found in JAR", jarPath));
-            }
-
-            outputStream = new FileOutputStream(filesystemPath.toFile());
-
-            byte[] temp = new byte[1024];
-
-            int bytesRead = 0;
-            while ((bytesRead = jarFileStream.read(temp)) != -1) {
-                outputStream.write(temp, 0, bytesRead);
-            }
-
-        } finally {
-            IOUtil.close(jarFileStream);
-            IOUtil.close(outputStream);
-        }
+    private DaemonDefinition toDefinition() {
+        DaemonDefinition definition = new DaemonDefinition();
+        definition.setOutputDirectory(outputDirectory);
+        definition.setApplicationName(applicationName);
+        definition.setScriptName(scriptName);
+        definition.setMainMethod(mainMethod);
+        definition.setExecutableFile(executableFile);
+        definition.setAppType(appType);
+        definition.setJvmArgs(jvmArgs);
+        definition.setJvmProfile(jvmProfile);
+        definition.setAppArgs(appArgs);
+        definition.setAdditionalClasspath(additionalClasspath);
+        definition.setJavaHome(javaHome);
+        definition.setJlinkRuntime(jlinkRuntime);
+        definition.setJlinkModules(jlinkModules);
+        definition.setJlinkCompress(jlinkCompress);
+        definition.setJlinkJdkHome(jlinkJdkHome);
+        definition.setGenerateClasspath(generateClasspath);
+        definition.setSingleFile(singleFile);
+        definition.setIncludeProjectArtifact(includeProjectArtifact);
+        definition.setClassDataSharing(classDataSharing);
+        definition.setControlAgent(controlAgent);
+        definition.setJarStore(jarStore);
+        definition.setReadinessTcpPort(readinessTcpPort);
+        definition.setReadinessHttpUrl(readinessHttpUrl);
+        definition.setReadinessLogPattern(readinessLogPattern);
+        definition.setReadinessFile(readinessFile);
+        definition.setReadinessTimeout(readinessTimeout);
+        definition.setMetricsTextfile(metricsTextfile);
+        definition.setLogPump(logPump);
+        definition.setLogMaxSize(logMaxSize);
+        definition.setLogRotateInterval(logRotateInterval);
+        definition.setLogRetention(logRetention);
+        definition.setLogCompress(logCompress);
+        definition.setLogBufferSize(logBufferSize);
+        definition.setInstances(instances);
+        definition.setCpuSets(cpuSets);
+        definition.setNumaNodes(numaNodes);
+        definition.setRestartPolicy(restartPolicy);
+        definition.setRestartDelay(restartDelay);
+        definition.setRestartMaxDelay(restartMaxDelay);
+        definition.setRestartLimit(restartLimit);
+        definition.setRestartWindow(restartWindow);
+        definition.setReloadPort(reloadPort);
+        definition.setDrainSignal(drainSignal);
+        definition.setDrainTimeout(drainTimeout);
+        definition.setServiceId(serviceId);
+        definition.setDependsOn(dependsOn);
+        return definition;
     }
 
 }
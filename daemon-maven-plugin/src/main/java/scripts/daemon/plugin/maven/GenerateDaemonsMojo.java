@@ -0,0 +1,210 @@
+package scripts.daemon.plugin.maven;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.plugins.annotations.ResolutionScope;
+import org.apache.maven.project.MavenProject;
+
+/***
+ * Maven step that will generate several customised Daemon application scripts in a single execution, for artifacts
+ * that ship more than one daemon. The daemons are generated in parallel, each into its own directory.
+ */
+@Mojo(name = "generate-daemons", threadSafe = true, requiresDependencyResolution = ResolutionScope.RUNTIME)
+public class GenerateDaemonsMojo extends AbstractMojo {
+
+    /**
+     * The directory in which to store the daemon files. Each daemon is written to a subdirectory named after its
+     * script, unless the daemon specifies its own output directory.
+     */
+    @Parameter(property = "outputDirectory", required = true)
+    private String outputDirectory;
+
+    /** The daemons to generate, each with the same configuration as the generate-daemon goal */
+    @Parameter(required = true)
+    private List<DaemonDefinition> daemons;
+
+    /** The number of daemons to generate at the same time. Defaults to the number of available processors */
+    @Parameter(property = "daemon.parallelism", defaultValue = "0")
+    private int parallelism;
+
+    @Parameter(defaultValue = "${project}", readonly = true, required = true)
+    private MavenProject mavenProject;
+
+    @Override
+    public void execute() throws MojoExecutionException, MojoFailureException {
+        if (daemons == null || daemons.isEmpty()) {
+            getLog().warn("No daemons have been configured, nothing to generate");
+            return;
+        }
+
+        // Validate everything up-front, so that a bad definition fails the build before any files are written
+        Map<Path, String> outputDirectories = new HashMap<>();
+        Map<Path, DaemonDefinition> runtimeDirectories = new HashMap<>();
+        for (DaemonDefinition daemon : daemons) {
+            if (StringUtils.isBlank(daemon.getScriptName()) || StringUtils.isBlank(daemon.getApplicationName())) {
+                throw new MojoFailureException("Every daemon must have both a 'scriptName' and an 'applicationName'");
+            }
+            daemon.validate();
+
+            Path daemonDirectory = resolveOutputDirectory(daemon);
+            String clash = outputDirectories.put(daemonDirectory, daemon.getScriptName());
+            if (clash != null) {
+                throw new MojoFailureException(String.format(
+                    "Daemons '%s' and '%s' would both be written to '%s'", clash, daemon.getScriptName(), daemonDirectory));
+            }
+            validateRuntime(daemon, daemonDirectory, runtimeDirectories);
+        }
+        validateDependencies();
+
+        ForkJoinPool pool = new ForkJoinPool(parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors());
+        try {
+            List<ForkJoinTask<Void>> tasks = new ArrayList<>();
+            for (final DaemonDefinition daemon : daemons) {
+                final DaemonGenerator generator = new DaemonGenerator(daemon, resolveOutputDirectory(daemon),
+                    mavenProject, getLog());
+                tasks.add(pool.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws MojoFailureException {
+                        generator.generate();
+                        return null;
+                    }
+                }));
+            }
+
+            List<String> failures = new ArrayList<>();
+            for (int index = 0; index < tasks.size(); index++) {
+                String scriptName = daemons.get(index).getScriptName();
+                try {
+                    tasks.get(index).get();
+                } catch (ExecutionException ex) {
+                    getLog().error(String.format("Error producing daemon '%s': %s", scriptName, ex.getCause().getMessage()),
+                        ex.getCause());
+                    failures.add(scriptName);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    throw new MojoExecutionException("Interrupted whilst generating daemons", ex);
+                }
+            }
+
+            if (!failures.isEmpty()) {
+                throw new MojoFailureException(String.format("Could not produce daemons: %s", failures));
+            }
+        } finally {
+            pool.shutdown();
+        }
+
+        getLog().info(String.format("Generated %d daemons into '%s'", daemons.size(), outputDirectory));
+    }
+
+    /***
+     * Check that daemons sharing a base directory, and so the linked runtime alongside their scripts, link the same
+     * runtime. Otherwise each would relink it over the other's, and all but one would run on a runtime missing modules.
+     *
+     * @param daemon The daemon definition
+     * @param daemonDirectory The directory the daemon is written to
+     * @param runtimeDirectories The daemons that link a runtime so far, keyed on the runtime's directory
+     * @throws MojoFailureException If another daemon links the same runtime differently
+     */
+    private static void validateRuntime(DaemonDefinition daemon, Path daemonDirectory, Map<Path, DaemonDefinition> runtimeDirectories)
+            throws MojoFailureException {
+        if (!daemon.isJlinkRuntime()) {
+            return;
+        }
+
+        Path runtimeDirectory = daemonDirectory.resolveSibling(JlinkRuntime.RUNTIME_DIRECTORY);
+        DaemonDefinition other = runtimeDirectories.put(runtimeDirectory, daemon);
+        if (other != null && !JlinkRuntime.describeLink(other).equals(JlinkRuntime.describeLink(daemon))) {
+            throw new MojoFailureException(String.format(
+                "Daemons '%s' and '%s' share the runtime in '%s', but link it differently (%s; %s). "
+                    + "Give them the same jlink settings, or each an outputDirectory with a base directory of its own",
+                other.getScriptName(), daemon.getScriptName(), runtimeDirectory,
+                JlinkRuntime.describeLink(other), JlinkRuntime.describeLink(daemon)));
+        }
+    }
+
+    /***
+     * Check that the daemons can be started in the order of their dependencies, as daemonctl will on the host: each must
+     * have a service ID of its own, and none may depend on itself through the others. Dependencies on services outside
+     * of this batch are left to daemonctl, which checks them against what is installed.
+     *
+     * @throws MojoFailureException If two daemons share a service ID, or depend on each other
+     */
+    private void validateDependencies() throws MojoFailureException {
+        Map<String, List<String>> dependencies = new LinkedHashMap<>();
+        for (DaemonDefinition daemon : daemons) {
+            List<String> dependsOn = daemon.getDependsOn() == null
+                ? new ArrayList<String>() : Arrays.asList(daemon.getDependsOn());
+            if (dependencies.put(daemon.getServiceId(), dependsOn) != null) {
+                throw new MojoFailureException(String.format("More than one daemon has the service ID '%s'", daemon.getServiceId()));
+            }
+        }
+
+        Map<String, Boolean> visited = new HashMap<>();
+        for (String serviceId : dependencies.keySet()) {
+            findCycle(serviceId, dependencies, visited, new ArrayList<String>());
+        }
+    }
+
+    /***
+     * Walk the dependencies of a service depth-first, failing should the walk come back around to a service that it is
+     * still below.
+     *
+     * @param serviceId The service to walk from
+     * @param dependencies The services each service depends on
+     * @param visited The services walked so far, mapped to whether their walk is complete
+     * @param path The services the walk is currently below
+     */
+    private static void findCycle(String serviceId, Map<String, List<String>> dependencies, Map<String, Boolean> visited,
+            List<String> path) throws MojoFailureException {
+        Boolean complete = visited.get(serviceId);
+        if (Boolean.TRUE.equals(complete)) {
+            return;
+        }
+        if (Boolean.FALSE.equals(complete)) {
+            List<String> cycle = new ArrayList<>(path.subList(path.indexOf(serviceId), path.size()));
+            cycle.add(serviceId);
+            throw new MojoFailureException(String.format("Daemons depend on each other: %s", StringUtils.join(cycle, " -> ")));
+        }
+
+        visited.put(serviceId, false);
+        path.add(serviceId);
+        for (String dependency : dependencies.get(serviceId)) {
+            if (dependencies.containsKey(dependency)) {
+                findCycle(dependency, dependencies, visited, path);
+            }
+        }
+        path.remove(path.size() - 1);
+        visited.put(serviceId, true);
+    }
+
+    /***
+     * Work out where a daemon should be written: its own output directory if it has one, otherwise a subdirectory of
+     * the shared output directory named after its script.
+     *
+     * @param daemon The daemon definition
+     * @return The directory to write the daemon files into
+     */
+    private Path resolveOutputDirectory(DaemonDefinition daemon) {
+        if (StringUtils.isNotBlank(daemon.getOutputDirectory())) {
+            return Paths.get(daemon.getOutputDirectory()).toAbsolutePath().normalize();
+        }
+        return Paths.get(outputDirectory, daemon.getScriptName()).toAbsolutePath().normalize();
+    }
+}
@@ -0,0 +1,197 @@
+package scripts.daemon.plugin.maven;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import com.google.common.base.Splitter;
+
+/***
+ * Records what a previous execution of the plugin produced in an output directory, such that an unchanged module can
+ * skip generation entirely and a changed module only has to rewrite the files that actually differ.
+ * <p />
+ *
+ * The manifest is a small text file stored alongside the generated scripts. The first line holds the digest of every
+ * input to the generation (plugin parameters and bundled resource digests), and each following line describes one
+ * output file: its content digest, size, modification time and path relative to the output directory. The size and
+ * modification time let us confirm a file is untouched with a single stat, rather than re-reading its content.
+ */
+class GenerationManifest {
+
+    /** The name of the manifest file, written into the output directory */
+    static final String MANIFEST_FILE = ".daemon-manifest";
+
+    /** Bumped whenever the layout of the manifest (or the meaning of its digests) changes */
+    private static final String FORMAT_VERSION = "daemon-manifest-1";
+
+    private static final String INPUTS_PREFIX = "inputs ";
+    private static final String FILE_PREFIX = "file ";
+
+    private final String inputsDigest;
+
+    private final Map<String, FileState> files = new TreeMap<>();
+
+    GenerationManifest(String inputsDigest) {
+        this.inputsDigest = inputsDigest;
+    }
+
+    String getInputsDigest() {
+        return inputsDigest;
+    }
+
+    Set<String> getFiles() {
+        return Collections.unmodifiableSet(files.keySet());
+    }
+
+    /***
+     * Check whether the output directory is exactly as this manifest left it, for the given inputs. This is the fast
+     * path for an unchanged module, so it must only stat the outputs and never read them.
+     *
+     * @param currentInputsDigest The digest of the inputs for the current execution
+     * @param directory The output directory the manifest describes
+     * @return true if nothing needs to be regenerated
+     */
+    boolean isUpToDate(String currentInputsDigest, Path directory) {
+        if (!inputsDigest.equals(currentInputsDigest) || files.isEmpty()) {
+            return false;
+        }
+
+        for (Map.Entry<String, FileState> entry : files.entrySet()) {
+            if (!entry.getValue().matches(directory.resolve(entry.getKey()))) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /***
+     * Check whether a single output file still holds the content this manifest recorded for it.
+     *
+     * @param relativePath The path of the file, relative to the output directory
+     * @param contentDigest The digest of the content that we would like the file to have
+     * @param directory The output directory the manifest describes
+     * @return true if the file does not need to be rewritten
+     */
+    boolean isUnchanged(String relativePath, String contentDigest, Path directory) {
+        FileState state = files.get(relativePath);
+        return state != null && state.digest.equals(contentDigest) && state.matches(directory.resolve(relativePath));
+    }
+
+    /***
+     * Record the current state of an output file, once it has been written (or confirmed to be correct).
+     *
+     * @param relativePath The path of the file, relative to the output directory
+     * @param contentDigest The digest of the file's content
+     * @param file The file itself
+     * @throws IOException If the file attributes could not be read
+     */
+    void record(String relativePath, String contentDigest, Path file) throws IOException {
+        BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+        files.put(relativePath, new FileState(contentDigest, attributes.size(), attributes.lastModifiedTime().toMillis()));
+    }
+
+    /***
+     * Write the manifest into the output directory. The file is written to the side and moved into place, so that an
+     * interrupted build can never leave a manifest that claims the outputs are complete.
+     *
+     * @param directory The output directory
+     * @throws IOException If the manifest could not be written
+     */
+    void write(Path directory) throws IOException {
+        Path target = directory.resolve(MANIFEST_FILE);
+        Path temp = directory.resolve(MANIFEST_FILE + ".tmp");
+
+        try (BufferedWriter writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+            writer.write(FORMAT_VERSION);
+            writer.newLine();
+            writer.write(INPUTS_PREFIX + inputsDigest);
+            writer.newLine();
+
+            for (Map.Entry<String, FileState> entry : files.entrySet()) {
+                FileState state = entry.getValue();
+                writer.write(String.format("%s%s %d %d %s", FILE_PREFIX, state.digest, state.size, state.modified,
+                    entry.getKey()));
+                writer.newLine();
+            }
+        }
+
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /***
+     * Read the manifest left in the output directory by a previous execution.
+     *
+     * @param directory The output directory
+     * @return The previous manifest, or null if there is none (or it cannot be understood)
+     */
+    static GenerationManifest read(Path directory) {
+        try (BufferedReader reader = Files.newBufferedReader(directory.resolve(MANIFEST_FILE), StandardCharsets.UTF_8)) {
+            String version = reader.readLine();
+            String inputs = reader.readLine();
+            if (!FORMAT_VERSION.equals(version) || inputs == null || !inputs.startsWith(INPUTS_PREFIX)) {
+                return null;
+            }
+
+            GenerationManifest manifest = new GenerationManifest(inputs.substring(INPUTS_PREFIX.length()));
+
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.startsWith(FILE_PREFIX)) {
+                    return null;
+                }
+
+                // The path is last, and may itself contain spaces
+                List<String> parts = Splitter.on(' ').limit(4).splitToList(line.substring(FILE_PREFIX.length()));
+                if (parts.size() != 4) {
+                    return null;
+                }
+
+                manifest.files.put(parts.get(3),
+                    new FileState(parts.get(0), Long.parseLong(parts.get(1)), Long.parseLong(parts.get(2))));
+            }
+
+            return manifest;
+        } catch (NoSuchFileException ex) {
+            return null;
+        } catch (IOException | NumberFormatException ex) {
+            // A damaged manifest simply means we regenerate everything
+            return null;
+        }
+    }
+
+    /***
+     * The recorded state of a single output file
+     */
+    private static final class FileState {
+        private final String digest;
+        private final long size;
+        private final long modified;
+
+        private FileState(String digest, long size, long modified) {
+            this.digest = digest;
+            this.size = size;
+            this.modified = modified;
+        }
+
+        private boolean matches(Path file) {
+            try {
+                BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+                return attributes.size() == size && attributes.lastModifiedTime().toMillis() == modified;
+            } catch (IOException ex) {
+                return false;
+            }
+        }
+    }
+}
@@ -0,0 +1,354 @@
+package scripts.daemon.plugin.maven;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.google.common.base.Joiner;
+import com.google.common.base.Splitter;
+import com.google.common.hash.Hasher;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugin.logging.Log;
+import org.apache.maven.project.MavenProject;
+
+/***
+ * Links a private Java runtime for a JAVA daemon, holding only the modules that the application needs, such that the
+ * daemon does not depend on a JDK being installed on the host. The modules are found by running <code>jdeps</code>
+ * over the project's runtime classpath, and the image is then built by <code>jlink</code>, stripped of debug
+ * information, header files and man pages.
+ * <p />
+ *
+ * Linking takes a few seconds, so the image is only rebuilt when something it depends on has changed: the options,
+ * the JDK it is linked from, or the jars on the classpath. A stamp of these is kept inside the image.
+ * <p />
+ *
+ * Daemons generated side by side share the runtime alongside them. Linking is done one daemon at a time per runtime
+ * directory, so the first daemon links the runtime and the rest find it up-to-date. For that, they must all link it
+ * the same way (see {@link #describeLink(DaemonDefinition)}).
+ */
+final class JlinkRuntime {
+
+    /** The runtime's directory, relative to the daemon's base directory */
+    static final String RUNTIME_DIRECTORY = "runtime";
+
+    /** The stamp of what the runtime was linked from, inside the runtime directory */
+    static final String STAMP_FILE = ".daemon-jlink";
+
+    /**
+     * The modules that the daemon script itself relies on, whatever the application needs: jdk.jcmd for jps, jstack
+     * and jcmd, jdk.jfr for the profile command, and jdk.management for the control agent's diagnostic commands
+     */
+    private static final List<String> DAEMON_MODULES = Arrays.asList("jdk.jcmd", "jdk.jfr", "jdk.management");
+
+    /** The version in a JDK's release file, e.g. JAVA_VERSION="17.0.9" */
+    private static final Pattern JAVA_VERSION = Pattern.compile("^JAVA_VERSION=\"(?:1\\.)?(\\d+)[^\"]*\"", Pattern.MULTILINE);
+
+    /** Locks to stop two daemons linking into the same runtime directory at once, keyed on the directory */
+    private static final ConcurrentMap<Path, Object> RUNTIME_DIRECTORY_LOCKS = new ConcurrentHashMap<>();
+
+    private final DaemonDefinition definition;
+
+    private final MavenProject project;
+
+    private final Log log;
+
+    JlinkRuntime(DaemonDefinition definition, MavenProject project, Log log) {
+        this.definition = definition;
+        this.project = project;
+        this.log = log;
+    }
+
+    /***
+     * Link the runtime into the given directory, unless it already holds a runtime linked from the same inputs
+     *
+     * @param runtimeDirectory Where the runtime should be
+     * @throws MojoFailureException If the JDK cannot link runtimes, or jdeps or jlink failed
+     */
+    void link(Path runtimeDirectory) throws MojoFailureException {
+        Path directory = runtimeDirectory.toAbsolutePath().normalize();
+        Object lock = RUNTIME_DIRECTORY_LOCKS.putIfAbsent(directory, new Object());
+        if (lock == null) {
+            lock = RUNTIME_DIRECTORY_LOCKS.get(directory);
+        }
+
+        synchronized (lock) {
+            linkUnlocked(directory);
+        }
+    }
+
+    /***
+     * Describe the settings that shape a daemon's runtime, such that two daemons sharing a runtime directory can be
+     * checked to link the same image. The classpath is the project's, so it is the same for every daemon.
+     *
+     * @param definition The daemon, which links a runtime
+     * @return The JDK, modules and options that the runtime is linked with
+     */
+    static String describeLink(DaemonDefinition definition) {
+        return String.format("JDK %s, modules %s, compress %s, project artifact %s",
+            StringUtils.defaultIfBlank(definition.getJlinkJdkHome(), System.getProperty("java.home")),
+            extraModules(definition), definition.isJlinkCompress(), definition.isIncludeProjectArtifact());
+    }
+
+    private void linkUnlocked(Path runtimeDirectory) throws MojoFailureException {
+        Path jdkHome = getJdkHome();
+        int jdkVersion = readJavaVersion(jdkHome);
+        if (jdkVersion < 9 || !Files.isExecutable(tool(jdkHome, "jlink"))) {
+            throw new MojoFailureException(String.format("Cannot link a runtime with '%s', a JDK of Java 9 or later is required", jdkHome));
+        }
+
+        List<Path> classpath = resolveClasspath();
+        String stamp = stamp(jdkHome, classpath);
+        Path stampFile = runtimeDirectory.resolve(STAMP_FILE);
+        try {
+            if (Files.isRegularFile(stampFile) && stamp.equals(new String(Files.readAllBytes(stampFile), StandardCharsets.UTF_8))) {
+                log.info(String.format("Java runtime in '%s' is up-to-date", runtimeDirectory));
+                return;
+            }
+
+            Set<String> modules = findModules(jdkHome, jdkVersion, classpath);
+            log.info(String.format("Linking a Java runtime of %s into '%s'", modules, runtimeDirectory));
+
+            // jlink will not write over an existing image
+            delete(runtimeDirectory);
+            Files.createDirectories(runtimeDirectory.getParent());
+
+            List<String> command = new ArrayList<>(Arrays.asList(tool(jdkHome, "jlink").toString(),
+                "--add-modules", Joiner.on(',').join(modules),
+                "--output", runtimeDirectory.toString(),
+                "--strip-debug", "--no-header-files", "--no-man-pages"));
+            if (definition.isJlinkCompress()) {
+                command.add(jdkVersion >= 21 ? "--compress=zip-6" : "--compress=2");
+            }
+            run(command);
+
+            /* Images are linked without the default CDS archive of the JDK's own classes, which every JVM start maps
+             * in place of loading them (and which AppCDS archives are layered on). Dump one for the new image. */
+            if (jdkVersion >= 10) {
+                run(Arrays.asList(tool(runtimeDirectory, "java").toString(), "-Xshare:dump"));
+            }
+
+            Files.write(stampFile, stamp.getBytes(StandardCharsets.UTF_8));
+        } catch (IOException ex) {
+            throw new MojoFailureException(String.format("Could not link a Java runtime into '%s'", runtimeDirectory), ex);
+        }
+    }
+
+    /***
+     * @return The JDK to link from: the one configured, or else the JDK that is running the build
+     */
+    private Path getJdkHome() {
+        String jdkHome = definition.getJlinkJdkHome();
+        return Paths.get(jdkHome == null || jdkHome.isEmpty() ? System.getProperty("java.home") : jdkHome);
+    }
+
+    /***
+     * Find the modules needed to run the classpath, plus those that the daemon script relies on and any that were asked
+     * for explicitly (e.g. modules that are only loaded through reflection or a service loader, which jdeps cannot see)
+     */
+    private Set<String> findModules(Path jdkHome, int jdkVersion, List<Path> classpath) throws IOException, MojoFailureException {
+        Set<String> modules = new TreeSet<>();
+        modules.add("java.base");
+        modules.addAll(DAEMON_MODULES);
+        modules.addAll(extraModules(definition));
+
+        if (!classpath.isEmpty()) {
+            String paths = Joiner.on(File.pathSeparator).join(classpath);
+            List<String> command = new ArrayList<>(Arrays.asList(tool(jdkHome, "jdeps").toString(),
+                "--print-module-deps", "--ignore-missing-deps", "-q",
+                "--multi-release", Integer.toString(jdkVersion),
+                "--class-path", paths));
+            for (Path entry : classpath) {
+                command.add(entry.toString());
+            }
+            modules.addAll(Splitter.on(',').trimResults().omitEmptyStrings().splitToList(run(command)));
+        }
+        return modules;
+    }
+
+    /***
+     * @return The jars (or classes directory) of the project's runtime classpath, as they are in the build
+     */
+    private List<Path> resolveClasspath() {
+        List<Path> classpath = new ArrayList<>();
+        if (project == null) {
+            return classpath;
+        }
+
+        if (definition.isIncludeProjectArtifact()) {
+            File projectFile = project.getArtifact() == null ? null : project.getArtifact().getFile();
+            if (projectFile == null && project.getBuild() != null) {
+                // Not packaged yet, so read the compiled classes instead
+                projectFile = new File(project.getBuild().getOutputDirectory());
+            }
+            if (projectFile != null && projectFile.exists()) {
+                classpath.add(projectFile.toPath());
+            }
+        }
+
+        for (Artifact artifact : project.getArtifacts()) {
+            if (artifact.getFile() != null && artifact.getArtifactHandler().isAddedToClasspath()
+                    && !Artifact.SCOPE_TEST.equals(artifact.getScope()) && !Artifact.SCOPE_PROVIDED.equals(artifact.getScope())) {
+                classpath.add(artifact.getFile().toPath());
+            }
+        }
+        return classpath;
+    }
+
+    /***
+     * Describe everything the runtime is linked from. Jars are described by their size and modification time, so
+     * checking that the runtime is current only needs a stat of each.
+     */
+    private String stamp(Path jdkHome, List<Path> classpath) throws MojoFailureException {
+        Hasher hasher = BundledScripts.DIGEST.newHasher();
+        hasher.putString(jdkHome.toString(), StandardCharsets.UTF_8).putByte((byte) 0);
+        hasher.putString(readRelease(jdkHome), StandardCharsets.UTF_8).putByte((byte) 0);
+        hasher.putBoolean(definition.isJlinkCompress());
+        hasher.putBoolean(definition.isIncludeProjectArtifact());
+        hasher.putString(Joiner.on(',').join(extraModules(definition)), StandardCharsets.UTF_8).putByte((byte) 0);
+
+        try {
+            for (Path entry : classpath) {
+                BasicFileAttributes attributes = Files.readAttributes(entry, BasicFileAttributes.class);
+                hasher.putString(entry.toString(), StandardCharsets.UTF_8).putByte((byte) 0);
+                hasher.putLong(attributes.size()).putLong(attributes.lastModifiedTime().toMillis());
+            }
+        } catch (IOException ex) {
+            throw new MojoFailureException("Could not read the project's runtime classpath", ex);
+        }
+        return hasher.hash().toString();
+    }
+
+    /***
+     * @return The modules asked for explicitly, in order, such that the same modules given in any order link the same
+     */
+    private static Set<String> extraModules(DaemonDefinition definition) {
+        Set<String> modules = new TreeSet<>();
+        if (definition.getJlinkModules() != null) {
+            for (String module : definition.getJlinkModules()) {
+                if (StringUtils.isNotBlank(module)) {
+                    modules.add(module.trim());
+                }
+            }
+        }
+        return modules;
+    }
+
+    private static int readJavaVersion(Path jdkHome) throws MojoFailureException {
+        Matcher version = JAVA_VERSION.matcher(readRelease(jdkHome));
+        if (!version.find()) {
+            throw new MojoFailureException(String.format("Cannot tell the Java version of '%s' from its release file", jdkHome));
+        }
+        return Integer.parseInt(version.group(1));
+    }
+
+    private static String readRelease(Path jdkHome) throws MojoFailureException {
+        try {
+            return new String(Files.readAllBytes(jdkHome.resolve("release")), StandardCharsets.UTF_8);
+        } catch (IOException ex) {
+            throw new MojoFailureException(String.format("'%s' is not a JDK, it has no release file", jdkHome), ex);
+        }
+    }
+
+    private static Path tool(Path jdkHome, String name) {
+        return jdkHome.resolve("bin").resolve(name);
+    }
+
+    /***
+     * Run a JDK tool, failing with its output if it does not succeed. What the tool writes to its standard error (e.g.
+     * jdeps' warnings about split packages, which -q does not silence) is logged, and kept out of the output.
+     *
+     * @return What the tool wrote to its standard output
+     */
+    private String run(List<String> command) throws IOException, MojoFailureException {
+        final Process process = new ProcessBuilder(command).start();
+        String tool = Paths.get(command.get(0)).getFileName().toString();
+
+        // Drained on a thread of its own, such that the tool cannot stall on either stream filling up
+        final ByteArrayOutputStream errors = new ByteArrayOutputStream();
+        Thread drainer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    readFully(process.getErrorStream(), errors);
+                } catch (IOException ex) {
+                    // The tool's exit code says whether it worked, the errors are only for the log
+                }
+            }
+        }, tool + "-stderr");
+        drainer.setDaemon(true);
+        drainer.start();
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        readFully(process.getInputStream(), output);
+
+        int exitCode;
+        try {
+            exitCode = process.waitFor();
+            drainer.join();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            process.destroy();
+            throw new MojoFailureException(String.format("Interrupted whilst running %s", command.get(0)));
+        }
+
+        String text = new String(output.toByteArray(), StandardCharsets.UTF_8).trim();
+        String errorText = new String(errors.toByteArray(), StandardCharsets.UTF_8).trim();
+        if (exitCode != 0) {
+            throw new MojoFailureException(String.format("%s exited with %d: %s", command.get(0), exitCode,
+                Joiner.on('\n').skipNulls().join(StringUtils.trimToNull(errorText), StringUtils.trimToNull(text))));
+        }
+
+        for (String line : Splitter.on('\n').trimResults().omitEmptyStrings().split(errorText)) {
+            log.warn(String.format("%s: %s", tool, line));
+        }
+        return text;
+    }
+
+    private static void readFully(InputStream input, ByteArrayOutputStream output) throws IOException {
+        try (InputStream in = input) {
+            byte[] buffer = new byte[8192];
+            for (int read = in.read(buffer); read != -1; read = in.read(buffer)) {
+                output.write(buffer, 0, read);
+            }
+        }
+    }
+
+    private static void delete(Path directory) throws IOException {
+        if (Files.notExists(directory)) {
+            return;
+        }
+
+        Files.walkFileTree(directory, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) throws IOException {
+                Files.delete(file);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path dir, IOException ex) throws IOException {
+                Files.delete(dir);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+}
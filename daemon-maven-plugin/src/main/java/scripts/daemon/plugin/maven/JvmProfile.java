@@ -0,0 +1,43 @@
+package scripts.daemon.plugin.maven;
+
+/***
+ * The JVM ergonomics profiles that the daemon script can size the JVM with, from the CPUs and memory of the host it is
+ * launched on
+ */
+public enum JvmProfile {
+
+    /** Parallel GC and a large, fixed-size heap, for batch and other work that cares about total throughput */
+    THROUGHPUT("throughput"),
+
+    /** A concurrent collector (ZGC, or G1 on older JVMs), for services that care about pause times */
+    LOW_LATENCY("low-latency"),
+
+    /** Serial GC and a small heap that grows on demand, for many small processes sharing a host */
+    SMALL_FOOTPRINT("small-footprint");
+
+    private final String value;
+
+    JvmProfile(String value) {
+        this.value = value;
+    }
+
+    /***
+     * @param value The profile's name, as given in the POM
+     * @return The profile with that name
+     * @throws IllegalArgumentException If there is no such profile
+     */
+    public static JvmProfile fromValue(String value) {
+        for (JvmProfile profile : values()) {
+            if (profile.value.equals(value)) {
+                return profile;
+            }
+        }
+        throw new IllegalArgumentException("No JVM profile named " + value);
+    }
+
+    @Override
+    public String toString() {
+        return value;
+    }
+
+}
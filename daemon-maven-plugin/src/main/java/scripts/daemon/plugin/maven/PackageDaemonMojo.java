@@ -0,0 +1,241 @@
+package scripts.daemon.plugin.maven;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugins.annotations.Component;
+import org.apache.maven.plugins.annotations.LifecyclePhase;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.plugins.annotations.ResolutionScope;
+import org.apache.maven.project.MavenProject;
+import org.apache.maven.project.MavenProjectHelper;
+
+/***
+ * Maven step that packages a generated daemon, with everything it needs to run, into a single archive: the scripts in
+ * <code>bin</code>, the runtime classpath in <code>lib</code>, the linked Java runtime (if any) in
+ * <code>runtime</code>, and empty <code>var</code> and <code>logs</code> directories. The archive is a tar.gz or zip.
+ * <p />
+ *
+ * Packaging is done on every core: the entries of a zip, or the blocks of a tar.gz, are deflated in parallel, and
+ * jars are stored rather than deflated again. Anything unchanged since the last build is copied from the previous
+ * archive. The archive is reproducible, being the same byte for byte for the same contents, whatever the number of
+ * threads or the time of the build.
+ */
+@Mojo(name = "package-daemon", defaultPhase = LifecyclePhase.PACKAGE, threadSafe = true,
+    requiresDependencyResolution = ResolutionScope.RUNTIME)
+public class PackageDaemonMojo extends AbstractMojo {
+
+    /** The timestamp of every entry when the project does not set project.build.outputTimestamp */
+    static final String DEFAULT_TIMESTAMP = "2000-01-01T00:00:00Z";
+
+    /** The directory that the daemon was generated into, i.e. the generate-daemon goal's outputDirectory */
+    @Parameter(property = PARAM_DAEMON_DIRECTORY, required = true)
+    private String daemonDirectory;
+
+    /** The format of the archive: <code>tar.gz</code> or <code>zip</code> */
+    @Parameter(property = PARAM_ARCHIVE_FORMAT, defaultValue = "tar.gz")
+    private String archiveFormat = "tar.gz";
+
+    /** The directory to write the archive to */
+    @Parameter(property = "archiveDirectory", defaultValue = "${project.build.directory}")
+    private String archiveDirectory;
+
+    /** The archive's file name, to which the format's extension is added */
+    @Parameter(property = "archiveName", defaultValue = "${project.build.finalName}-daemon")
+    private String archiveName;
+
+    /** The directory inside the archive that holds the daemon, or blank to put bin, lib etc. at the top */
+    @Parameter(property = "baseDirectory", defaultValue = "${project.build.finalName}")
+    private String baseDirectory;
+
+    /** Whether the project's own jar goes into lib, along with its runtime dependencies */
+    @Parameter(property = "includeProjectArtifact", defaultValue = "true")
+    private boolean includeProjectArtifact = true;
+
+    /** The deflate level, from 1 (fastest) to 9 (smallest) */
+    @Parameter(property = PARAM_COMPRESSION_LEVEL, defaultValue = "6")
+    private int compressionLevel = 6;
+
+    /**
+     * The modification time of every entry, as an ISO-8601 date and time or seconds since the epoch, as Maven's other
+     * packaging plugins take it. Defaults to the start of 2000, such that archives are always reproducible.
+     */
+    @Parameter(property = "outputTimestamp", defaultValue = "${project.build.outputTimestamp}")
+    private String outputTimestamp;
+
+    /** The number of threads to compress on. Defaults to the number of available processors */
+    @Parameter(property = "daemon.parallelism", defaultValue = "0")
+    private int parallelism;
+
+    /** The classifier that the archive is attached to the project with, for it to be installed and deployed */
+    @Parameter(property = "classifier", defaultValue = "daemon")
+    private String classifier = "daemon";
+
+    /** Whether to attach the archive to the project */
+    @Parameter(property = "attach", defaultValue = "true")
+    private boolean attach = true;
+
+    @Parameter(defaultValue = "${project}", readonly = true, required = true)
+    private MavenProject mavenProject;
+
+    @Component
+    private MavenProjectHelper projectHelper;
+
+    /** Definition of parameter names expected in the POM file */
+    public static final String
+            PARAM_DAEMON_DIRECTORY = "daemonDirectory",
+            PARAM_ARCHIVE_FORMAT = "archiveFormat",
+            PARAM_COMPRESSION_LEVEL = "compressionLevel";
+
+    @Override
+    public void execute() throws MojoExecutionException, MojoFailureException {
+        ArchiveFormat format = validateParams();
+        long timestamp = parseTimestamp(outputTimestamp);
+
+        Path daemon = Paths.get(daemonDirectory).toAbsolutePath().normalize();
+        if (!Files.isDirectory(daemon)) {
+            throw new MojoFailureException(String.format("There is no daemon in '%s' to package, generate it first", daemon));
+        }
+        Path archive = Paths.get(archiveDirectory, archiveName + "." + format.getExtension()).toAbsolutePath();
+
+        int threads = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            List<ArchiveEntry> entries = collectEntries(daemon);
+            long start = System.nanoTime();
+            Files.createDirectories(archive.getParent());
+            int reused = Archiver.forFormat(format, pool, threads, compressionLevel, timestamp).write(entries, archive);
+            getLog().info(String.format("Packaged %d entries into '%s' in %d ms, reusing %d %s of the previous archive",
+                entries.size(), archive, (System.nanoTime() - start) / 1000000, reused,
+                format == ArchiveFormat.ZIP ? "entries" : "blocks"));
+        } catch (IOException ex) {
+            throw new MojoExecutionException(String.format("Could not package the daemon into '%s'", archive), ex);
+        } finally {
+            pool.shutdown();
+        }
+
+        if (attach && projectHelper != null && mavenProject != null) {
+            projectHelper.attachArtifact(mavenProject, format.getExtension(), classifier, archive.toFile());
+        }
+    }
+
+    /***
+     * @return The archive format
+     * @throws MojoFailureException If the format or compression level is not supported
+     */
+    protected ArchiveFormat validateParams() throws MojoFailureException {
+        ArchiveFormat format;
+        try {
+            format = ArchiveFormat.fromValue(archiveFormat);
+        } catch (IllegalArgumentException ex) {
+            throw new MojoFailureException(String.format(
+                "The '%s' value provided for property %s is not supported. Supported formats: %s",
+                archiveFormat, PARAM_ARCHIVE_FORMAT, Arrays.toString(ArchiveFormat.values())));
+        }
+
+        if (compressionLevel < 1 || compressionLevel > 9) {
+            throw new MojoFailureException(String.format("Parameter '%s' must be from 1 to 9", PARAM_COMPRESSION_LEVEL));
+        }
+        return format;
+    }
+
+    /***
+     * Lay out the daemon as it is installed, with its entries in the order they are archived
+     */
+    private List<ArchiveEntry> collectEntries(Path daemon) throws IOException, MojoFailureException {
+        String base = StringUtils.isBlank(baseDirectory) ? "" : StringUtils.strip(baseDirectory.trim(), "/") + "/";
+        List<ArchiveEntry> entries = new ArrayList<>();
+        if (!base.isEmpty()) {
+            entries.add(ArchiveEntry.directory(base));
+        }
+
+        addTree(entries, daemon, base + "bin/");
+        Path runtime = daemon.resolveSibling(JlinkRuntime.RUNTIME_DIRECTORY);
+        if (Files.isDirectory(runtime)) {
+            addTree(entries, runtime, base + JlinkRuntime.RUNTIME_DIRECTORY + "/");
+        }
+
+        entries.add(ArchiveEntry.directory(base + RuntimeClasspath.LIB_DIRECTORY));
+        if (mavenProject != null) {
+            for (Map.Entry<String, Artifact> library : RuntimeClasspath.resolveArtifacts(mavenProject, includeProjectArtifact).entrySet()) {
+                File file = library.getValue().getFile();
+                if (file == null || !file.isFile()) {
+                    throw new MojoFailureException(String.format(
+                        "'%s' has not been built or resolved, package the daemon in the package phase or later", library.getValue()));
+                }
+                entries.add(ArchiveEntry.file(base + library.getKey(), file.toPath(), false));
+            }
+        }
+
+        entries.add(ArchiveEntry.directory(base + "var"));
+        entries.add(ArchiveEntry.directory(base + "logs"));
+        Collections.sort(entries);
+        return entries;
+    }
+
+    /***
+     * Add a directory and everything under it, leaving out the plugin's own bookkeeping files. Links are archived as
+     * what they link to.
+     */
+    private static void addTree(final List<ArchiveEntry> entries, final Path directory, final String name) throws IOException {
+        Files.walkFileTree(directory, EnumSet.of(FileVisitOption.FOLLOW_LINKS), Integer.MAX_VALUE, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attributes) {
+                entries.add(ArchiveEntry.directory(name + toName(directory.relativize(dir))));
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) {
+                String fileName = file.getFileName().toString();
+                if (!GenerationManifest.MANIFEST_FILE.equals(fileName) && !JlinkRuntime.STAMP_FILE.equals(fileName)) {
+                    entries.add(ArchiveEntry.file(name + toName(directory.relativize(file)), file, Files.isExecutable(file)));
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    private static String toName(Path relative) {
+        return relative.toString().replace(File.separatorChar, '/');
+    }
+
+    /***
+     * @param value An ISO-8601 date and time, or seconds since the epoch, or blank for {@link #DEFAULT_TIMESTAMP}
+     * @return The timestamp in milliseconds since the epoch
+     * @throws MojoFailureException If the value is neither
+     */
+    static long parseTimestamp(String value) throws MojoFailureException {
+        String timestamp = StringUtils.isBlank(value) ? DEFAULT_TIMESTAMP : value.trim();
+        try {
+            if (StringUtils.isNumeric(timestamp)) {
+                return Long.parseLong(timestamp) * 1000;
+            }
+            return OffsetDateTime.parse(timestamp).toInstant().toEpochMilli();
+        } catch (NumberFormatException | DateTimeParseException ex) {
+            throw new MojoFailureException(String.format("'%s' is not a timestamp, e.g. 2024-01-01T00:00:00Z", value));
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package scripts.daemon.plugin.maven;
+
+/***
+ * When the supervisor restarts an application that has exited
+ */
+public enum RestartPolicy {
+
+    /** Never, the application is not supervised */
+    NEVER("never"),
+
+    /** Whenever it exits with a non-zero code, or is killed by a signal */
+    ON_FAILURE("on-failure"),
+
+    /** Whenever it exits, unless it was stopped by the daemon script */
+    ALWAYS("always");
+
+    private final String value;
+
+    RestartPolicy(String value) {
+        this.value = value;
+    }
+
+    /***
+     * @param value The policy's name, as given in the POM
+     * @return The policy with that name
+     * @throws IllegalArgumentException If there is no such policy
+     */
+    public static RestartPolicy fromValue(String value) {
+        for (RestartPolicy policy : values()) {
+            if (policy.value.equals(value)) {
+                return policy;
+            }
+        }
+        throw new IllegalArgumentException("No restart policy named " + value);
+    }
+
+    @Override
+    public String toString() {
+        return value;
+    }
+
+}
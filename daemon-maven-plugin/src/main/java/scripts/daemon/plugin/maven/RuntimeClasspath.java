@@ -0,0 +1,81 @@
+package scripts.daemon.plugin.maven;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.project.MavenProject;
+
+/***
+ * Computes, at build time, the ordered runtime classpath of a project as it will be laid out in the daemon's
+ * <code>lib</code> directory. The daemon script uses this in place of scanning the lib directory at every start,
+ * which gives a deterministic classpath order and avoids forking <code>find</code>.
+ * <p />
+ *
+ * Jars are expected to be named as the assembly and dependency plugins name them by default:
+ * <code>artifactId-version[-classifier].extension</code>.
+ */
+final class RuntimeClasspath {
+
+    /** The name of the classpath file, written alongside the daemon script */
+    static final String CLASSPATH_FILE = "classpath";
+
+    /** The daemon's library directory, relative to its base directory */
+    static final String LIB_DIRECTORY = "lib";
+
+    private RuntimeClasspath() {
+    }
+
+    /***
+     * Resolve the runtime classpath of the given project, in the order Maven resolved it.
+     *
+     * @param project The project being built, with its runtime dependencies resolved
+     * @param includeProjectArtifact Whether the project's own jar is part of the classpath (it is placed first)
+     * @return The classpath entries, relative to the daemon's base directory
+     */
+    static List<String> resolve(MavenProject project, boolean includeProjectArtifact) {
+        return new ArrayList<>(resolveArtifacts(project, includeProjectArtifact).keySet());
+    }
+
+    /***
+     * Resolve the artifacts of the runtime classpath of the given project, in the order Maven resolved it, as
+     * {@link #resolve(MavenProject, boolean)} does.
+     *
+     * @return The artifacts, by their classpath entries
+     */
+    static Map<String, Artifact> resolveArtifacts(MavenProject project, boolean includeProjectArtifact) {
+        Map<String, Artifact> entries = new LinkedHashMap<>();
+
+        if (includeProjectArtifact && project.getArtifact() != null
+                && "jar".equals(project.getArtifact().getArtifactHandler().getExtension())) {
+            entries.put(toEntry(project.getArtifact()), project.getArtifact());
+        }
+
+        for (Artifact artifact : project.getArtifacts()) {
+            if (isRuntimeScope(artifact.getScope()) && artifact.getArtifactHandler().isAddedToClasspath()) {
+                entries.put(toEntry(artifact), artifact);
+            }
+        }
+
+        return entries;
+    }
+
+    private static boolean isRuntimeScope(String scope) {
+        return StringUtils.isBlank(scope) || Artifact.SCOPE_COMPILE.equals(scope) || Artifact.SCOPE_RUNTIME.equals(scope);
+    }
+
+    private static String toEntry(Artifact artifact) {
+        StringBuilder fileName = new StringBuilder(LIB_DIRECTORY)
+            .append('/').append(artifact.getArtifactId())
+            .append('-').append(artifact.getBaseVersion());
+
+        if (StringUtils.isNotBlank(artifact.getClassifier())) {
+            fileName.append('-').append(artifact.getClassifier());
+        }
+
+        return fileName.append('.').append(artifact.getArtifactHandler().getExtension()).toString();
+    }
+}
@@ -0,0 +1,353 @@
+package scripts.daemon.plugin.maven;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+import com.google.common.hash.Hasher;
+
+/***
+ * Writes a gzipped tar, compressing it in blocks on several threads at once, as pigz does. The tar is cut into blocks,
+ * each of which is deflated on its own, primed with the end of the block before it, and flushed to a byte boundary,
+ * such that the blocks simply follow one another in a single gzip member that any gzip can read.
+ * <p />
+ *
+ * Blocks never span the contents of a jar (or another compressed file), which go into blocks of their own that are
+ * stored rather than deflated. A block that was in the previous archive, with the same bytes before it, is copied from
+ * there rather than deflated again. An index of the blocks is kept alongside the archive for this.
+ */
+final class TarGzArchiver extends Archiver {
+
+    /** The uncompressed bytes in a block, as pigz uses */
+    static final int BLOCK_SIZE = 128 * 1024;
+
+    /** The window that deflate refers back into, which primes each block */
+    private static final int DICTIONARY_SIZE = 32 * 1024;
+
+    private static final int RECORD_SIZE = 512;
+
+    /** A gzip member header: deflate, no flags, no modification time, from Unix */
+    private static final byte[] GZIP_HEADER = { 0x1f, (byte) 0x8b, 8, 0, 0, 0, 0, 0, 0, 3 };
+
+    /** The file alongside the archive that indexes its blocks */
+    static final String INDEX_SUFFIX = ".blocks";
+
+    TarGzArchiver(ExecutorService executor, int parallelism, int level, long timestamp) {
+        super(executor, parallelism, level, timestamp);
+    }
+
+    @Override
+    int write(List<ArchiveEntry> entries, Path archive) throws IOException {
+        Path indexFile = archive.resolveSibling(archive.getFileName() + INDEX_SUFFIX);
+        Map<String, long[]> previous = readIndex(indexFile, archive);
+        Map<String, long[]> index = new LinkedHashMap<>();
+
+        Path partial = partialFile(archive);
+        BlockWriter writer = null;
+        try (FileChannel out = FileChannel.open(partial, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING);
+                FileChannel in = previous.isEmpty() ? null : FileChannel.open(archive, StandardOpenOption.READ)) {
+            writeFully(out, ByteBuffer.wrap(GZIP_HEADER));
+
+            writer = new BlockWriter(out, in, previous, index);
+            byte[] buffer = new byte[BLOCK_SIZE];
+            for (ArchiveEntry entry : entries) {
+                long size = entry.isDirectory() ? 0 : Files.size(entry.getSource());
+                writer.add(header(entry, size, timestamp / 1000), true);
+                if (entry.isDirectory()) {
+                    continue;
+                }
+
+                try (InputStream input = Files.newInputStream(entry.getSource())) {
+                    long remaining = size;
+                    while (remaining > 0) {
+                        int read = input.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+                        if (read < 0) {
+                            throw new IOException(String.format("'%s' changed whilst it was being archived", entry.getSource()));
+                        }
+                        writer.add(Arrays.copyOf(buffer, read), entry.isCompressible());
+                        remaining -= read;
+                    }
+                }
+                int padding = (int) (RECORD_SIZE - size % RECORD_SIZE) % RECORD_SIZE;
+                writer.add(new byte[padding], true);
+            }
+
+            // The end of the tar, two empty records
+            writer.add(new byte[2 * RECORD_SIZE], true);
+            writer.finish();
+
+            ByteBuffer trailer = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN);
+            trailer.putInt((int) writer.crc.getValue()).putInt((int) writer.length);
+            trailer.flip();
+            writeFully(out, trailer);
+        } catch (IOException | RuntimeException ex) {
+            Files.deleteIfExists(partial);
+            throw ex;
+        }
+
+        Files.deleteIfExists(indexFile);
+        replace(partial, archive);
+        writeIndex(indexFile, archive, index);
+        return writer.reused;
+    }
+
+    /***
+     * Cuts the tar into blocks, queues them to be deflated, and writes them out in order
+     */
+    private final class BlockWriter {
+
+        private final FileChannel out;
+        private final FileChannel previousArchive;
+        private final Map<String, long[]> previous;
+        private final Map<String, long[]> index;
+
+        private final Deque<Future<Block>> queue = new ArrayDeque<>();
+        private final CRC32 crc = new CRC32();
+        private long length;
+        private int reused;
+
+        /** The compressible bytes waiting to fill a block */
+        private byte[] pending = new byte[BLOCK_SIZE];
+        private int pendingLength;
+
+        /** The end of the last block, if it was compressible, to prime the next with */
+        private byte[] dictionary;
+
+        BlockWriter(FileChannel out, FileChannel previousArchive, Map<String, long[]> previous, Map<String, long[]> index) {
+            this.out = out;
+            this.previousArchive = previousArchive;
+            this.previous = previous;
+            this.index = index;
+        }
+
+        /***
+         * @param bytes The next bytes of the tar
+         * @param compressible Whether to deflate them, or store them in a block of their own
+         */
+        void add(byte[] bytes, boolean compressible) throws IOException {
+            crc.update(bytes);
+            length += bytes.length;
+
+            if (!compressible) {
+                flushPending(false);
+                submit(bytes, bytes.length, false, false);
+                return;
+            }
+
+            int offset = 0;
+            while (offset < bytes.length) {
+                int copied = Math.min(bytes.length - offset, BLOCK_SIZE - pendingLength);
+                System.arraycopy(bytes, offset, pending, pendingLength, copied);
+                pendingLength += copied;
+                offset += copied;
+                if (pendingLength == BLOCK_SIZE) {
+                    flushPending(false);
+                }
+            }
+        }
+
+        /***
+         * Deflate what remains as the last block, and write out every block still queued
+         */
+        void finish() throws IOException {
+            flushPending(true);
+            while (!queue.isEmpty()) {
+                writeBlock(await(queue.remove()));
+            }
+        }
+
+        private void flushPending(boolean last) throws IOException {
+            if (pendingLength > 0 || last) {
+                byte[] block = pending;
+                int blockLength = pendingLength;
+                pending = new byte[BLOCK_SIZE];
+                pendingLength = 0;
+                submit(block, blockLength, true, last);
+            }
+        }
+
+        private void submit(final byte[] bytes, final int blockLength, final boolean compressible, final boolean last)
+                throws IOException {
+            while (queue.size() >= queueSize) {
+                writeBlock(await(queue.remove()));
+            }
+
+            final byte[] primer = compressible ? dictionary : null;
+            dictionary = compressible
+                ? Arrays.copyOfRange(bytes, Math.max(0, blockLength - DICTIONARY_SIZE), blockLength) : null;
+            queue.add(executor.submit(new Callable<Block>() {
+                @Override
+                public Block call() {
+                    if (!compressible) {
+                        return new Block(null, deflate(bytes, blockLength, Deflater.NO_COMPRESSION, null, last), null);
+                    }
+
+                    String key = key(bytes, blockLength, primer, last);
+                    long[] old = previous.get(key);
+                    if (old != null) {
+                        return new Block(key, null, old);
+                    }
+                    return new Block(key, deflate(bytes, blockLength, level, primer, last), null);
+                }
+            }));
+        }
+
+        private void writeBlock(Block block) throws IOException {
+            long offset = out.position();
+            if (block.reused != null) {
+                copy(previousArchive, block.reused[0], block.reused[1], out);
+                reused++;
+            } else {
+                writeFully(out, ByteBuffer.wrap(block.data));
+            }
+            if (block.key != null) {
+                index.put(block.key, new long[] { offset, out.position() - offset });
+            }
+        }
+    }
+
+    /***
+     * Identify a compressible block by everything its deflated bytes depend on
+     */
+    private String key(byte[] bytes, int blockLength, byte[] primer, boolean last) {
+        Hasher hasher = BundledScripts.DIGEST.newHasher().putInt(level).putBoolean(last);
+        if (primer != null) {
+            hasher.putInt(primer.length).putBytes(primer);
+        } else {
+            hasher.putInt(-1);
+        }
+        return hasher.putBytes(bytes, 0, blockLength).hash().toString();
+    }
+
+    /***
+     * Build the ustar header of an entry. Names of more than 100 bytes are split between the name and prefix fields.
+     */
+    static byte[] header(ArchiveEntry entry, long size, long mtime) throws IOException {
+        byte[] header = new byte[RECORD_SIZE];
+        byte[] name = entry.getName().getBytes(StandardCharsets.UTF_8);
+        if (name.length <= 100) {
+            System.arraycopy(name, 0, header, 0, name.length);
+        } else {
+            int split = -1;
+            for (int index = name.length - 2; index > 0; index--) {
+                if (name[index] == '/' && index <= 155 && name.length - index - 1 <= 100) {
+                    split = index;
+                    break;
+                }
+            }
+            if (split < 0) {
+                throw new IOException(String.format("'%s' is too long a path for a tar, package as zip instead", entry));
+            }
+            System.arraycopy(name, split + 1, header, 0, name.length - split - 1);
+            System.arraycopy(name, 0, header, 345, split);
+        }
+
+        octal(header, 100, 8, entry.getMode(), entry);
+        octal(header, 108, 8, 0, entry);
+        octal(header, 116, 8, 0, entry);
+        octal(header, 124, 12, size, entry);
+        octal(header, 136, 12, mtime, entry);
+        header[156] = (byte) (entry.isDirectory() ? '5' : '0');
+        System.arraycopy("ustar\u000000".getBytes(StandardCharsets.US_ASCII), 0, header, 257, 8);
+
+        Arrays.fill(header, 148, 156, (byte) ' ');
+        long checksum = 0;
+        for (byte value : header) {
+            checksum += value & 0xff;
+        }
+        octal(header, 148, 7, checksum, entry);
+        return header;
+    }
+
+    /***
+     * Write a number as zero-padded octal, ended by a NUL, as tar's numeric fields are
+     */
+    private static void octal(byte[] header, int offset, int length, long value, ArchiveEntry entry) throws IOException {
+        String digits = Long.toOctalString(value);
+        if (digits.length() > length - 1) {
+            throw new IOException(String.format("'%s' is too large for a tar, package as zip instead", entry));
+        }
+        for (int index = 0; index < length - 1; index++) {
+            int digit = index - (length - 1 - digits.length());
+            header[offset + index] = (byte) (digit < 0 ? '0' : digits.charAt(digit));
+        }
+        header[offset + length - 1] = 0;
+    }
+
+    /***
+     * Read the index of the previous archive's blocks, which is only trusted whilst the archive is the size it was when
+     * the index was written
+     *
+     * @return The offset and length of each block in the previous archive, by its key
+     */
+    private Map<String, long[]> readIndex(Path indexFile, Path archive) {
+        if (!Files.isRegularFile(indexFile) || !Files.isRegularFile(archive)) {
+            return Collections.emptyMap();
+        }
+
+        try (BufferedReader reader = Files.newBufferedReader(indexFile, StandardCharsets.UTF_8)) {
+            String[] header = reader.readLine().split(" ");
+            if (header.length != 2 || Integer.parseInt(header[0]) != level || Long.parseLong(header[1]) != Files.size(archive)) {
+                return Collections.emptyMap();
+            }
+
+            Map<String, long[]> blocks = new HashMap<>();
+            for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                String[] fields = line.split(" ");
+                blocks.put(fields[0], new long[] { Long.parseLong(fields[1]), Long.parseLong(fields[2]) });
+            }
+            return blocks;
+        } catch (IOException | RuntimeException ex) {
+            // Not an index that can be trusted, so everything is compressed afresh
+            return Collections.emptyMap();
+        }
+    }
+
+    private void writeIndex(Path indexFile, Path archive, Map<String, long[]> index) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(indexFile, StandardCharsets.UTF_8)) {
+            writer.write(level + " " + Files.size(archive));
+            writer.newLine();
+            for (Map.Entry<String, long[]> block : index.entrySet()) {
+                writer.write(block.getKey() + " " + block.getValue()[0] + " " + block.getValue()[1]);
+                writer.newLine();
+            }
+        }
+    }
+
+    /***
+     * A block ready to be written: its bytes, or where to copy them from in the previous archive
+     */
+    private static final class Block {
+        final String key;
+        final byte[] data;
+        final long[] reused;
+
+        Block(String key, byte[] data, long[] reused) {
+            this.key = key;
+            this.data = data;
+            this.reused = reused;
+        }
+    }
+}
@@ -0,0 +1,340 @@
+package scripts.daemon.plugin.maven;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+
+/***
+ * Writes a zip, deflating each entry on a thread of its own. Jars and other compressed files are stored.
+ * <p />
+ *
+ * An entry is copied from the previous zip when it has the same name, size and CRC there, as compressing the same
+ * bytes at the same level gives the same result. Only zips that this class wrote at the same level are reused, which
+ * the zip's comment records.
+ */
+final class ZipArchiver extends Archiver {
+
+    private static final int LOCAL_HEADER = 0x04034b50;
+    private static final int CENTRAL_HEADER = 0x02014b50;
+    private static final int END_OF_CENTRAL_DIRECTORY = 0x06054b50;
+
+    private static final int LOCAL_HEADER_LENGTH = 30;
+    private static final int CENTRAL_HEADER_LENGTH = 46;
+    private static final int END_OF_CENTRAL_DIRECTORY_LENGTH = 22;
+
+    private static final short STORED = 0;
+    private static final short DEFLATED = 8;
+
+    /** Version 2.0, which added deflate and directories */
+    private static final short VERSION_NEEDED = 20;
+
+    /** Made on Unix, such that unzip applies the permissions in the external attributes */
+    private static final short VERSION_MADE_BY = (3 << 8) | VERSION_NEEDED;
+
+    /** Names are UTF-8 */
+    private static final short FLAGS = 0x0800;
+
+    private static final int UNIX_FILE = 0100000;
+    private static final int UNIX_DIRECTORY = 0040000;
+    private static final int DOS_DIRECTORY = 0x10;
+
+    /** The largest size or offset without the Zip64 extensions */
+    private static final long MAX_SIZE = 0xffffffffL;
+    private static final int MAX_ENTRIES = 0xffff;
+
+    ZipArchiver(ExecutorService executor, int parallelism, int level, long timestamp) {
+        super(executor, parallelism, level, timestamp);
+    }
+
+    @Override
+    int write(List<ArchiveEntry> entries, Path archive) throws IOException {
+        if (entries.size() > MAX_ENTRIES) {
+            throw new IOException(String.format("A zip holds at most %d entries, package as tar.gz instead", MAX_ENTRIES));
+        }
+
+        byte[] comment = ("daemon-maven-plugin deflate level " + level).getBytes(StandardCharsets.UTF_8);
+        final Map<String, Previous> previous = readPrevious(archive, comment);
+        int dosTime = toDosTime(timestamp);
+
+        Path partial = partialFile(archive);
+        int reused = 0;
+        try (FileChannel out = FileChannel.open(partial, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING);
+                FileChannel in = previous.isEmpty() ? null : FileChannel.open(archive, StandardOpenOption.READ)) {
+            List<Written> written = new ArrayList<>(entries.size());
+            Deque<Future<Compressed>> queue = new ArrayDeque<>();
+            int next = 0;
+            for (int index = 0; index < entries.size(); index++) {
+                while (next < entries.size() && queue.size() < queueSize) {
+                    queue.add(executor.submit(compress(entries.get(next++), previous)));
+                }
+
+                ArchiveEntry entry = entries.get(index);
+                Compressed compressed = await(queue.remove());
+                Written header = new Written(entry, compressed, out.position());
+                if (header.offset > MAX_SIZE || compressed.compressedSize > MAX_SIZE || compressed.size > MAX_SIZE) {
+                    throw new IOException(String.format("'%s' is beyond the 4GB a zip can hold, package as tar.gz instead", entry));
+                }
+
+                writeFully(out, localHeader(header, dosTime));
+                if (compressed.reused != null) {
+                    copy(in, compressed.reused.dataOffset(in), compressed.compressedSize, out);
+                    reused++;
+                } else if (compressed.data != null) {
+                    writeFully(out, ByteBuffer.wrap(compressed.data));
+                }
+                written.add(header);
+            }
+
+            long centralDirectoryOffset = out.position();
+            for (Written header : written) {
+                writeFully(out, centralHeader(header, dosTime));
+            }
+            long centralDirectorySize = out.position() - centralDirectoryOffset;
+            if (centralDirectoryOffset + centralDirectorySize > MAX_SIZE) {
+                throw new IOException("The zip would be beyond 4GB, package as tar.gz instead");
+            }
+
+            ByteBuffer end = buffer(END_OF_CENTRAL_DIRECTORY_LENGTH + comment.length);
+            end.putInt(END_OF_CENTRAL_DIRECTORY).putShort((short) 0).putShort((short) 0)
+                .putShort((short) written.size()).putShort((short) written.size())
+                .putInt((int) centralDirectorySize).putInt((int) centralDirectoryOffset)
+                .putShort((short) comment.length).put(comment);
+            end.flip();
+            writeFully(out, end);
+        } catch (IOException | RuntimeException ex) {
+            Files.deleteIfExists(partial);
+            throw ex;
+        }
+
+        replace(partial, archive);
+        return reused;
+    }
+
+    /***
+     * Read and deflate (or store) an entry, unless it can be copied from the previous zip
+     */
+    private Callable<Compressed> compress(final ArchiveEntry entry, final Map<String, Previous> previous) {
+        return new Callable<Compressed>() {
+            @Override
+            public Compressed call() throws IOException {
+                if (entry.isDirectory()) {
+                    return new Compressed(STORED, 0, 0, 0, null, null);
+                }
+
+                byte[] content = Files.readAllBytes(entry.getSource());
+                CRC32 crc = new CRC32();
+                crc.update(content);
+
+                // Whether an entry is deflated only depends on its content, so a compressible entry may be either
+                Previous old = previous.get(entry.getName());
+                if (old != null && old.crc == crc.getValue() && old.size == content.length
+                        && (entry.isCompressible() || old.method == STORED)) {
+                    return new Compressed(old.method, crc.getValue(), content.length, old.compressedSize, null, old);
+                }
+
+                if (entry.isCompressible()) {
+                    byte[] deflated = deflate(content, content.length, level, null, true);
+                    if (deflated.length < content.length) {
+                        return new Compressed(DEFLATED, crc.getValue(), content.length, deflated.length, deflated, null);
+                    }
+                }
+                return new Compressed(STORED, crc.getValue(), content.length, content.length, content, null);
+            }
+        };
+    }
+
+    private static ByteBuffer localHeader(Written header, int dosTime) {
+        byte[] name = header.entry.getName().getBytes(StandardCharsets.UTF_8);
+        ByteBuffer buffer = buffer(LOCAL_HEADER_LENGTH + name.length);
+        buffer.putInt(LOCAL_HEADER).putShort(VERSION_NEEDED).putShort(FLAGS).putShort(header.compressed.method)
+            .putInt(dosTime)
+            .putInt((int) header.compressed.crc)
+            .putInt((int) header.compressed.compressedSize)
+            .putInt((int) header.compressed.size)
+            .putShort((short) name.length).putShort((short) 0)
+            .put(name);
+        buffer.flip();
+        return buffer;
+    }
+
+    private static ByteBuffer centralHeader(Written header, int dosTime) {
+        ArchiveEntry entry = header.entry;
+        byte[] name = entry.getName().getBytes(StandardCharsets.UTF_8);
+        int attributes = ((entry.isDirectory() ? UNIX_DIRECTORY : UNIX_FILE) | entry.getMode()) << 16
+            | (entry.isDirectory() ? DOS_DIRECTORY : 0);
+
+        ByteBuffer buffer = buffer(CENTRAL_HEADER_LENGTH + name.length);
+        buffer.putInt(CENTRAL_HEADER).putShort(VERSION_MADE_BY).putShort(VERSION_NEEDED).putShort(FLAGS)
+            .putShort(header.compressed.method)
+            .putInt(dosTime)
+            .putInt((int) header.compressed.crc)
+            .putInt((int) header.compressed.compressedSize)
+            .putInt((int) header.compressed.size)
+            .putShort((short) name.length).putShort((short) 0).putShort((short) 0)
+            .putShort((short) 0).putShort((short) 0)
+            .putInt(attributes)
+            .putInt((int) header.offset)
+            .put(name);
+        buffer.flip();
+        return buffer;
+    }
+
+    /***
+     * Read the central directory of the previous zip, should it be one that this class wrote at the same level
+     *
+     * @return The previous zip's entries by name, empty if there is nothing to reuse
+     */
+    private static Map<String, Previous> readPrevious(Path archive, byte[] comment) {
+        if (!Files.isRegularFile(archive)) {
+            return Collections.emptyMap();
+        }
+
+        try (FileChannel channel = FileChannel.open(archive, StandardOpenOption.READ)) {
+            int endLength = END_OF_CENTRAL_DIRECTORY_LENGTH + comment.length;
+            if (channel.size() < endLength) {
+                return Collections.emptyMap();
+            }
+            ByteBuffer end = read(channel, channel.size() - endLength, endLength);
+            if (end.getInt(0) != END_OF_CENTRAL_DIRECTORY || (end.getShort(20) & 0xffff) != comment.length
+                    || !ByteBuffer.wrap(comment).equals(slice(end, END_OF_CENTRAL_DIRECTORY_LENGTH, comment.length))) {
+                return Collections.emptyMap();
+            }
+
+            int count = end.getShort(10) & 0xffff;
+            ByteBuffer directory = read(channel, end.getInt(16) & MAX_SIZE, end.getInt(12));
+            Map<String, Previous> entries = new HashMap<>();
+            for (int index = 0; index < count; index++) {
+                int position = directory.position();
+                if (directory.getInt(position) != CENTRAL_HEADER) {
+                    return Collections.emptyMap();
+                }
+                int nameLength = directory.getShort(position + 28) & 0xffff;
+                int extraLength = directory.getShort(position + 30) & 0xffff;
+                int commentLength = directory.getShort(position + 32) & 0xffff;
+                byte[] name = new byte[nameLength];
+                directory.position(position + CENTRAL_HEADER_LENGTH);
+                directory.get(name);
+
+                entries.put(new String(name, StandardCharsets.UTF_8), new Previous(
+                    directory.getShort(position + 10),
+                    directory.getInt(position + 16) & MAX_SIZE,
+                    directory.getInt(position + 24) & MAX_SIZE,
+                    directory.getInt(position + 20) & MAX_SIZE,
+                    directory.getInt(position + 42) & MAX_SIZE));
+                directory.position(position + CENTRAL_HEADER_LENGTH + nameLength + extraLength + commentLength);
+            }
+            return entries;
+        } catch (IOException | RuntimeException ex) {
+            // Not a zip that can be reused, so everything is compressed afresh
+            return Collections.emptyMap();
+        }
+    }
+
+    /***
+     * Turn a time into the MS-DOS date and time that zip headers hold, with the date in the upper 16 bits. The time is
+     * taken in UTC, such that the zip does not depend on the build's time zone.
+     */
+    static int toDosTime(long timestamp) {
+        LocalDateTime time = LocalDateTime.ofEpochSecond(timestamp / 1000, 0, ZoneOffset.UTC);
+        if (time.getYear() < 1980) {
+            time = LocalDateTime.of(1980, 1, 1, 0, 0);
+        }
+        int date = (time.getYear() - 1980) << 9 | time.getMonthValue() << 5 | time.getDayOfMonth();
+        return date << 16 | time.getHour() << 11 | time.getMinute() << 5 | time.getSecond() / 2;
+    }
+
+    private static ByteBuffer buffer(int length) {
+        return ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private static ByteBuffer slice(ByteBuffer buffer, int offset, int length) {
+        ByteBuffer slice = buffer.duplicate();
+        slice.position(offset).limit(offset + length);
+        return slice.slice();
+    }
+
+    /***
+     * An entry ready to be written: its bytes, or the previous entry to copy them from
+     */
+    private static final class Compressed {
+        final short method;
+        final long crc;
+        final long size;
+        final long compressedSize;
+        final byte[] data;
+        final Previous reused;
+
+        Compressed(short method, long crc, long size, long compressedSize, byte[] data, Previous reused) {
+            this.method = method;
+            this.crc = crc;
+            this.size = size;
+            this.compressedSize = compressedSize;
+            this.data = data;
+            this.reused = reused;
+        }
+    }
+
+    /***
+     * An entry that has been written, for the central directory
+     */
+    private static final class Written {
+        final ArchiveEntry entry;
+        final Compressed compressed;
+        final long offset;
+
+        Written(ArchiveEntry entry, Compressed compressed, long offset) {
+            this.entry = entry;
+            this.compressed = compressed;
+            this.offset = offset;
+        }
+    }
+
+    /***
+     * An entry of the previous zip, as its central directory describes it
+     */
+    private static final class Previous {
+        final short method;
+        final long crc;
+        final long size;
+        final long compressedSize;
+        final long headerOffset;
+
+        Previous(short method, long crc, long size, long compressedSize, long headerOffset) {
+            this.method = method;
+            this.crc = crc;
+            this.size = size;
+            this.compressedSize = compressedSize;
+            this.headerOffset = headerOffset;
+        }
+
+        /***
+         * @return Where the entry's data starts, after its local header
+         */
+        long dataOffset(FileChannel channel) throws IOException {
+            ByteBuffer header = read(channel, headerOffset, LOCAL_HEADER_LENGTH);
+            if (header.getInt(0) != LOCAL_HEADER) {
+                throw new IOException("The previous archive has changed whilst it was being read");
+            }
+            return headerOffset + LOCAL_HEADER_LENGTH + (header.getShort(26) & 0xffff) + (header.getShort(28) & 0xffff);
+        }
+    }
+}
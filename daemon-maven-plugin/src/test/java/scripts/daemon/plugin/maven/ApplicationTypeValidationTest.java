@@ -1,9 +1,18 @@
 package scripts.daemon.plugin.maven;
 
 import static scripts.daemon.plugin.maven.DaemonMojo.PARAM_APP_TYPE;
+import static scripts.daemon.plugin.maven.DaemonMojo.PARAM_CLASS_DATA_SHARING;
+import static scripts.daemon.plugin.maven.DaemonMojo.PARAM_CPU_SETS;
+import static scripts.daemon.plugin.maven.DaemonMojo.PARAM_DEPENDS_ON;
 import static scripts.daemon.plugin.maven.DaemonMojo.PARAM_EXECUTABLE;
+import static scripts.daemon.plugin.maven.DaemonMojo.PARAM_JAR_STORE;
 import static scripts.daemon.plugin.maven.DaemonMojo.PARAM_JAVA_HOME;
+import static scripts.daemon.plugin.maven.DaemonMojo.PARAM_JLINK_RUNTIME;
+import static scripts.daemon.plugin.maven.DaemonMojo.PARAM_JVM_PROFILE;
+import static scripts.daemon.plugin.maven.DaemonMojo.PARAM_LOG_MAX_SIZE;
 import static scripts.daemon.plugin.maven.DaemonMojo.PARAM_MAIN_METHOD;
+import static scripts.daemon.plugin.maven.DaemonMojo.PARAM_RELOAD_PORT;
+import static scripts.daemon.plugin.maven.DaemonMojo.PARAM_RESTART_POLICY;
 import static org.hamcrest.Matchers.containsString;
 
 import org.apache.maven.plugin.testing.MojoRule;
@@ -65,6 +74,31 @@ public class ApplicationTypeValidationTest {
         daemonMojo.validateParams();
     }
 
+    @Test
+    public void javaWithLinkedRuntimeNeedsNoJavaHome() throws Exception {
+        DaemonMojo daemonMojo = new DaemonMojo();
+        mojoRule.setVariableValueToObject(daemonMojo, PARAM_APP_TYPE, ApplicationType.JAVA.toString());
+        mojoRule.setVariableValueToObject(daemonMojo, PARAM_JLINK_RUNTIME, true);
+        mojoRule.setVariableValueToObject(daemonMojo, PARAM_MAIN_METHOD, "A");
+
+        daemonMojo.validateParams();
+        // Do nothing, expect no exception
+    }
+
+    @Test
+    public void javaIsEitherJavaHomeOrLinkedRuntime() throws Exception {
+        DaemonMojo daemonMojo = new DaemonMojo();
+        mojoRule.setVariableValueToObject(daemonMojo, PARAM_APP_TYPE, ApplicationType.JAVA.toString());
+        mojoRule.setVariableValueToObject(daemonMojo, PARAM_JAVA_HOME, "/opt/java");
+        mojoRule.setVariableValueToObject(daemonMojo, PARAM_JLINK_RUNTIME, true);
+        mojoRule.setVariableValueToObject(daemonMojo, PARAM_MAIN_METHOD, "A");
+
+        exception.expect(IllegalArgumentException.class);
+        exception.expectMessage(containsString("'javaHome' and 'jlinkRuntime' cannot be used together"));
+
+        daemonMojo.validateParams();
+    }
+
     @Test
     public void javaNeedsMainMethod() throws Exception {
         DaemonMojo daemonMojo = new DaemonMojo();
@@ -99,4 +133,140 @@ public class ApplicationTypeValidationTest {
         daemonMojo.validateParams();
         // Do nothing, expect no exception
     }
+
+    @Test
+    public void classDataSharingNeedsJava() throws Exception {
+        DaemonMojo daemonMojo = new DaemonMojo();
+        mojoRule.setVariableValueToObject(daemonMojo, PARAM_APP_TYPE, ApplicationType.EXECUTABLE.toString());
+        mojoRule.setVariableValueToObject(daemonMojo, PARAM_EXECUTABLE, "asdf");
+        mojoRule.setVariableValueToObject(daemonMojo, PARAM_CLASS_DATA_SHARING, true);
+
+        exception.expect(IllegalArgumentException.class);
+        exception.expectMessage(containsString("'classDataSharing' is only supported when application type is JAVA"));
+
+        daemonMojo.validateParams();
+    }
+
+    @Test
+    public void logPumpNeedsValidSize() throws Exception {
+        DaemonMojo daemonMojo = new DaemonMojo();
+        mojoRule.setVariableValueToObject(daemonMojo, PARAM_APP_TYPE, ApplicationType.EXECUTABLE.toString());
+        mojoRule.setVariableValueToObject(daemonMojo, PARAM_EXECUTABLE, "asdf");
+        mojoRule.setVariableValueToObject(daemonMojo, "logPump", true);
+        mojoRule.setVariableValueToObject(daemonMojo, PARAM_LOG_MAX_SIZE, "lots");
+
+        exception.expect(IllegalArgumentException.class);
+        exception.expectMessage(containsString("'logMaxSize' must be a size"));
+
+        daemonMojo.validateParams();
+    }
+
+    @Test
+    public void pinningIsEitherCpuSetsOrNumaNodes() throws Exception {
+        DaemonMojo daemonMojo = new DaemonMojo();
+        mojoRule.setVariableValueToObject(daemonMojo, PARAM_APP_TYPE, ApplicationType.EXECUTABLE.toString());
+        mojoRule.setVariableValueToObject(daemonMojo, PARAM_EXECUTABLE, "asdf");
+        mojoRule.setVariableValueToObject(daemonMojo, PARAM_CPU_SETS, new String[] { "0-3", "4-7" });
+        mojoRule.setVariableValueToObject(daemonMojo, "numaNodes", new String[] { "auto" });
+
+        exception.expect(IllegalArgumentException.class);
+        exception.expectMessage(containsString("either 'cpuSets' or 'numaNodes', not both"));
+
+        daemonMojo.validateParams();
+    }
+
+    @Test
+    public void jvmProfileMustBeKnown() throws Exception {
+        DaemonMojo daemonMojo = new DaemonMojo();
+        mojoRule.setVariableValueToObject(daemonMojo, PARAM_APP_TYPE, ApplicationType.JAVA.toString());
+        mojoRule.setVariableValueToObject(daemonMojo, PARAM_JAVA_HOME, "/opt/java");
+        mojoRule.setVariableValueToObject(daemonMojo, PARAM_MAIN_METHOD, "com.example.Main");
+        mojoRule.setVariableValueToObject(daemonMojo, PARAM_JVM_PROFILE, "fast");
+
+        exception.expect(IllegalArgumentException.class);
+        exception.expectMessage(containsString("Supported profiles: [throughput, low-latency, small-footprint]"));
+
+        daemonMojo.validateParams();
+    }
+
+    @Test
+    public void serviceCannotDependOnItself() throws Exception {
+        DaemonMojo daemonMojo = new DaemonMojo();
+        mojoRule.setVariableValueToObject(daemonMojo, PARAM_APP_TYPE, ApplicationType.EXECUTABLE.toString());
+        mojoRule.setVariableValueToObject(daemonMojo, PARAM_EXECUTABLE, "asdf");
+        mojoRule.setVariableValueToObject(daemonMojo, "scriptName", "orders");
+        mojoRule.setVariableValueToObject(daemonMojo, PARAM_DEPENDS_ON, new String[] { "database", "orders" });
+
+        exception.expect(IllegalArgumentException.class);
+        exception.expectMessage(containsString("Service 'orders' cannot depend on itself"));
+
+        daemonMojo.validateParams();
+    }
+
+    @Test
+    public void restartPolicyMustBeKnown() throws Exception {
+        DaemonMojo daemonMojo = new DaemonMojo();
+        mojoRule.setVariableValueToObject(daemonMojo, PARAM_APP_TYPE, ApplicationType.EXECUTABLE.toString());
+        mojoRule.setVariableValueToObject(daemonMojo, PARAM_EXECUTABLE, "asdf");
+        mojoRule.setVariableValueToObject(daemonMojo, PARAM_RESTART_POLICY, "sometimes");
+
+        exception.expect(IllegalArgumentException.class);
+        exception.expectMessage(containsString("Supported policies: [never, on-failure, always]"));
+
+        daemonMojo.validateParams();
+    }
+
+    @Test
+    public void reloadPortNeedsReadinessTcpPort() throws Exception {
+        DaemonMojo daemonMojo = new DaemonMojo();
+        mojoRule.setVariableValueToObject(daemonMojo, PARAM_APP_TYPE, ApplicationType.EXECUTABLE.toString());
+        mojoRule.setVariableValueToObject(daemonMojo, PARAM_EXECUTABLE, "asdf");
+        mojoRule.setVariableValueToObject(daemonMojo, PARAM_RELOAD_PORT, 8081);
+
+        exception.expect(IllegalArgumentException.class);
+        exception.expectMessage(containsString("Parameter 'reloadPort' is only supported along with 'readinessTcpPort'"));
+
+        daemonMojo.validateParams();
+    }
+
+    @Test
+    public void jarStoreMustBeAbsolute() throws Exception {
+        DaemonMojo daemonMojo = new DaemonMojo();
+        mojoRule.setVariableValueToObject(daemonMojo, PARAM_APP_TYPE, ApplicationType.JAVA.toString());
+        mojoRule.setVariableValueToObject(daemonMojo, PARAM_JAVA_HOME, "A");
+        mojoRule.setVariableValueToObject(daemonMojo, PARAM_MAIN_METHOD, "A");
+        mojoRule.setVariableValueToObject(daemonMojo, PARAM_JAR_STORE, "var/jars");
+
+        exception.expect(IllegalArgumentException.class);
+        exception.expectMessage(containsString("Parameter 'jarStore' must be an absolute path"));
+
+        daemonMojo.validateParams();
+    }
+
+    @Test
+    public void readinessHttpUrlMustBeHttp() throws Exception {
+        DaemonMojo daemonMojo = new DaemonMojo();
+        mojoRule.setVariableValueToObject(daemonMojo, PARAM_APP_TYPE, ApplicationType.EXECUTABLE.toString());
+        mojoRule.setVariableValueToObject(daemonMojo, PARAM_EXECUTABLE, "asdf");
+        mojoRule.setVariableValueToObject(daemonMojo, "readinessHttpUrl", "ftp://localhost:8080/health");
+
+        exception.expect(IllegalArgumentException.class);
+        exception.expectMessage(containsString("is not an http:// or https:// URL"));
+
+        daemonMojo.validateParams();
+    }
+
+    @Test
+    public void readinessHttpUrlNeedsAPortForSeveralInstances() throws Exception {
+        DaemonMojo daemonMojo = new DaemonMojo();
+        mojoRule.setVariableValueToObject(daemonMojo, PARAM_APP_TYPE, ApplicationType.EXECUTABLE.toString());
+        mojoRule.setVariableValueToObject(daemonMojo, PARAM_EXECUTABLE, "asdf");
+        mojoRule.setVariableValueToObject(daemonMojo, "readinessHttpUrl", "http://localhost/health");
+        mojoRule.setVariableValueToObject(daemonMojo, "instances", 2);
+
+        exception.expect(IllegalArgumentException.class);
+        exception.expectMessage(containsString("must give a port when there are 2 instances"));
+
+        daemonMojo.validateParams();
+    }
 }
@@ -0,0 +1,143 @@
+package scripts.daemon.plugin.maven;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.is;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugin.testing.MojoRule;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
+
+/***
+ * A single execution of the generate-daemons goal should produce every configured daemon in its own directory
+ */
+public class GenerateDaemonsTest {
+
+    @Rule
+    public ExpectedException exception = ExpectedException.none();
+
+    @Rule
+    public MojoRule mojoRule = new MojoRule();
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void generatesEveryDaemon() throws Exception {
+        Path outputDirectory = temporaryFolder.getRoot().toPath();
+        List<DaemonDefinition> daemons = new ArrayList<>();
+        for (int index = 0; index < 12; index++) {
+            daemons.add(executable("service-" + index));
+        }
+
+        newMojo(outputDirectory, daemons).execute();
+
+        for (int index = 0; index < 12; index++) {
+            Path daemonDirectory = outputDirectory.resolve("service-" + index);
+            assertThat(Files.isRegularFile(daemonDirectory.resolve("service-" + index)), is(true));
+            assertThat(Files.isRegularFile(daemonDirectory.resolve("daemon-executable")), is(true));
+            assertThat(new String(Files.readAllBytes(daemonDirectory.resolve("app-config.sh")), StandardCharsets.UTF_8),
+                containsString("APP_NAME=\"Service service-" + index + "\""));
+            assertThat(new String(Files.readAllBytes(daemonDirectory.resolve("service-" + index + ".service")), StandardCharsets.UTF_8),
+                containsString("SERVICE_ID=\"service-" + index + "\""));
+        }
+    }
+
+    @Test
+    public void daemonsMustNotShareADirectory() throws Exception {
+        Path outputDirectory = temporaryFolder.getRoot().toPath();
+        List<DaemonDefinition> daemons = new ArrayList<>();
+        daemons.add(executable("service"));
+        daemons.add(executable("service"));
+
+        exception.expect(MojoFailureException.class);
+        exception.expectMessage(containsString("would both be written to"));
+        newMojo(outputDirectory, daemons).execute();
+    }
+
+    @Test
+    public void daemonsSharingARuntimeMustLinkItAlike() throws Exception {
+        Path outputDirectory = temporaryFolder.getRoot().toPath();
+        DaemonDefinition orders = java("orders");
+        orders.setJlinkModules(new String[] { "java.sql", "java.naming" });
+        DaemonDefinition payments = java("payments");
+        payments.setJlinkModules(new String[] { "java.naming" });
+        List<DaemonDefinition> daemons = new ArrayList<>();
+        daemons.add(orders);
+        daemons.add(payments);
+
+        exception.expect(MojoFailureException.class);
+        exception.expectMessage(containsString("Daemons 'orders' and 'payments' share the runtime in"));
+        newMojo(outputDirectory, daemons).execute();
+    }
+
+    @Test
+    public void invalidDaemonFailsBeforeGeneration() throws Exception {
+        Path outputDirectory = temporaryFolder.getRoot().toPath();
+        DaemonDefinition invalid = executable("broken");
+        invalid.setExecutableFile(null);
+        List<DaemonDefinition> daemons = new ArrayList<>();
+        daemons.add(executable("valid"));
+        daemons.add(invalid);
+
+        exception.expect(IllegalArgumentException.class);
+        exception.expectMessage(containsString("'executableFile' is not optional"));
+        try {
+            newMojo(outputDirectory, daemons).execute();
+        } finally {
+            assertThat(Files.exists(outputDirectory.resolve("valid")), is(false));
+        }
+    }
+
+    @Test
+    public void daemonsMustNotDependOnEachOther() throws Exception {
+        Path outputDirectory = temporaryFolder.getRoot().toPath();
+        DaemonDefinition orders = executable("orders");
+        orders.setDependsOn(new String[] { "payments", "database" });
+        DaemonDefinition payments = executable("payments");
+        payments.setServiceId("payments");
+        payments.setDependsOn(new String[] { "orders" });
+        List<DaemonDefinition> daemons = new ArrayList<>();
+        daemons.add(orders);
+        daemons.add(payments);
+
+        exception.expect(MojoFailureException.class);
+        exception.expectMessage(containsString("Daemons depend on each other: orders -> payments -> orders"));
+        newMojo(outputDirectory, daemons).execute();
+    }
+
+    private GenerateDaemonsMojo newMojo(Path outputDirectory, List<DaemonDefinition> daemons) throws Exception {
+        GenerateDaemonsMojo mojo = new GenerateDaemonsMojo();
+        mojoRule.setVariableValueToObject(mojo, "outputDirectory", outputDirectory.toString());
+        mojoRule.setVariableValueToObject(mojo, "daemons", daemons);
+        return mojo;
+    }
+
+    private static DaemonDefinition java(String scriptName) {
+        DaemonDefinition daemon = new DaemonDefinition();
+        daemon.setApplicationName("Service " + scriptName);
+        daemon.setScriptName(scriptName);
+        daemon.setAppType(ApplicationType.JAVA.toString());
+        daemon.setMainMethod("com.example.Main");
+        daemon.setJlinkRuntime(true);
+        return daemon;
+    }
+
+    private static DaemonDefinition executable(String scriptName) {
+        DaemonDefinition daemon = new DaemonDefinition();
+        daemon.setApplicationName("Service " + scriptName);
+        daemon.setScriptName(scriptName);
+        daemon.setAppType(ApplicationType.EXECUTABLE.toString());
+        daemon.setExecutableFile("run.sh");
+        return daemon;
+    }
+}
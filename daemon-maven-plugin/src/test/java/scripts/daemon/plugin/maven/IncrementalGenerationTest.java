@@ -0,0 +1,145 @@
+package scripts.daemon.plugin.maven;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+
+import org.apache.maven.plugin.testing.MojoRule;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/***
+ * Running the plugin against an unchanged module should not rewrite anything, and a change should only rewrite the
+ * files that are affected by it.
+ */
+public class IncrementalGenerationTest {
+
+    private static final FileTime LONG_AGO = FileTime.fromMillis(1000000000000L);
+
+    @Rule
+    public MojoRule mojoRule = new MojoRule();
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void unchangedModuleIsSkipped() throws Exception {
+        Path outputDirectory = temporaryFolder.getRoot().toPath();
+
+        newMojo(outputDirectory, "-Xmx64m").execute();
+        Path daemonScript = outputDirectory.resolve("my-daemon");
+        Path appConfig = outputDirectory.resolve("app-config.sh");
+        assertThat("Daemon script should be generated", Files.isRegularFile(daemonScript), is(true));
+        assertThat("Manifest should be written", Files.isRegularFile(outputDirectory.resolve(GenerationManifest.MANIFEST_FILE)), is(true));
+
+        GenerationManifest manifest = GenerationManifest.read(outputDirectory);
+        Files.setLastModifiedTime(outputDirectory.resolve(GenerationManifest.MANIFEST_FILE), LONG_AGO);
+
+        newMojo(outputDirectory, "-Xmx64m").execute();
+        assertThat("Manifest should not be rewritten for an unchanged module",
+            Files.getLastModifiedTime(outputDirectory.resolve(GenerationManifest.MANIFEST_FILE)), is(LONG_AGO));
+        assertThat(GenerationManifest.read(outputDirectory).getInputsDigest(), is(manifest.getInputsDigest()));
+        assertThat(Files.isRegularFile(appConfig), is(true));
+    }
+
+    @Test
+    public void onlyChangedFilesAreRewritten() throws Exception {
+        Path outputDirectory = temporaryFolder.getRoot().toPath();
+
+        newMojo(outputDirectory, "-Xmx64m").execute();
+        Path daemonScript = outputDirectory.resolve("my-daemon");
+        Path appConfig = outputDirectory.resolve("app-config.sh");
+        Files.setLastModifiedTime(daemonScript, LONG_AGO);
+        Files.setLastModifiedTime(appConfig, LONG_AGO);
+
+        newMojo(outputDirectory, "-Xmx128m").execute();
+        assertThat("Daemon script has not changed", Files.getLastModifiedTime(daemonScript), is(LONG_AGO));
+        assertThat("Config has changed", Files.getLastModifiedTime(appConfig), is(not(LONG_AGO)));
+        assertThat(new String(Files.readAllBytes(appConfig), StandardCharsets.UTF_8).contains("-Xmx128m"), is(true));
+    }
+
+    @Test
+    public void modifiedOutputIsRestored() throws Exception {
+        Path outputDirectory = temporaryFolder.getRoot().toPath();
+
+        newMojo(outputDirectory, "-Xmx64m").execute();
+        Path commonScript = outputDirectory.resolve("common/common.sh");
+        byte[] original = Files.readAllBytes(commonScript);
+        Files.write(commonScript, "# edited by hand".getBytes(StandardCharsets.UTF_8));
+
+        newMojo(outputDirectory, "-Xmx64m").execute();
+        assertThat("Hand-edited file should be regenerated", Files.readAllBytes(commonScript), is(original));
+    }
+
+    @Test
+    public void logPumpIsOnlyCopiedWhenEnabled() throws Exception {
+        Path outputDirectory = temporaryFolder.getRoot().toPath();
+        Path logPump = outputDirectory.resolve("logpump.jar");
+
+        DaemonMojo daemonMojo = newMojo(outputDirectory, "-Xmx64m");
+        mojoRule.setVariableValueToObject(daemonMojo, "logPump", true);
+        daemonMojo.execute();
+        assertThat("Log pump should be copied", Files.isRegularFile(logPump), is(true));
+
+        newMojo(outputDirectory, "-Xmx64m").execute();
+        assertThat("Log pump should be removed once disabled", Files.exists(logPump), is(false));
+    }
+
+    @Test
+    public void singleFileInlinesWhatTheScriptSources() throws Exception {
+        Path outputDirectory = temporaryFolder.getRoot().toPath();
+        Path daemonScript = outputDirectory.resolve("my-daemon");
+
+        newMojo(outputDirectory, "-Xmx64m").execute();
+        DaemonMojo daemonMojo = newMojo(outputDirectory, "-Xmx64m");
+        mojoRule.setVariableValueToObject(daemonMojo, "singleFile", true);
+        daemonMojo.execute();
+
+        String script = new String(Files.readAllBytes(daemonScript), StandardCharsets.UTF_8);
+        assertThat("Config should be inlined", script.contains("APP_JVM_ARGS=\"-Xmx64m\""), is(true));
+        assertThat("Java functions should be inlined", script.contains("forkApplication() {"), is(true));
+        assertThat("Every marked source line should be replaced", script.contains("# @inline"), is(false));
+        assertThat("Inlined files should be removed", Files.exists(outputDirectory.resolve("app-config.sh")), is(false));
+        assertThat(Files.exists(outputDirectory.resolve("daemon-java")), is(false));
+        assertThat(Files.exists(outputDirectory.resolve("common/common.sh")), is(false));
+    }
+
+    @Test
+    public void runtimeIsOnlyLinkedOnce() throws Exception {
+        Path outputDirectory = temporaryFolder.newFolder("bin").toPath();
+        Path runtimeJava = temporaryFolder.getRoot().toPath().resolve("runtime/bin/java");
+
+        DaemonMojo daemonMojo = newMojo(outputDirectory, "-Xmx64m");
+        mojoRule.setVariableValueToObject(daemonMojo, DaemonMojo.PARAM_JAVA_HOME, null);
+        mojoRule.setVariableValueToObject(daemonMojo, DaemonMojo.PARAM_JLINK_RUNTIME, true);
+        daemonMojo.execute();
+        assertThat("Runtime should be linked next to bin", Files.isExecutable(runtimeJava), is(true));
+        assertThat(new String(Files.readAllBytes(outputDirectory.resolve("app-config.sh")), StandardCharsets.UTF_8)
+            .contains("APP_JAVA_HOME=\"${DIR_BASE}/runtime\""), is(true));
+
+        Files.setLastModifiedTime(runtimeJava, LONG_AGO);
+        daemonMojo = newMojo(outputDirectory, "-Xmx128m");
+        mojoRule.setVariableValueToObject(daemonMojo, DaemonMojo.PARAM_JAVA_HOME, null);
+        mojoRule.setVariableValueToObject(daemonMojo, DaemonMojo.PARAM_JLINK_RUNTIME, true);
+        daemonMojo.execute();
+        assertThat("Runtime should not be relinked", Files.getLastModifiedTime(runtimeJava), is(LONG_AGO));
+    }
+
+    private DaemonMojo newMojo(Path outputDirectory, String jvmArgs) throws Exception {
+        DaemonMojo daemonMojo = new DaemonMojo();
+        mojoRule.setVariableValueToObject(daemonMojo, "outputDirectory", outputDirectory.toString());
+        mojoRule.setVariableValueToObject(daemonMojo, "applicationName", "My Daemon");
+        mojoRule.setVariableValueToObject(daemonMojo, "scriptName", "my-daemon");
+        mojoRule.setVariableValueToObject(daemonMojo, DaemonMojo.PARAM_APP_TYPE, ApplicationType.JAVA.toString());
+        mojoRule.setVariableValueToObject(daemonMojo, DaemonMojo.PARAM_JAVA_HOME, "/opt/java");
+        mojoRule.setVariableValueToObject(daemonMojo, DaemonMojo.PARAM_MAIN_METHOD, "com.example.Main");
+        mojoRule.setVariableValueToObject(daemonMojo, "jvmArgs", jvmArgs);
+        return daemonMojo;
+    }
+}
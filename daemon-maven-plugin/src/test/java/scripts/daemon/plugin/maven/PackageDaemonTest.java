@@ -0,0 +1,215 @@
+package scripts.daemon.plugin.maven;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.artifact.DefaultArtifact;
+import org.apache.maven.artifact.handler.DefaultArtifactHandler;
+import org.apache.maven.plugin.testing.MojoRule;
+import org.apache.maven.project.MavenProject;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/***
+ * The package-daemon goal should lay the daemon out as it is installed, and produce the same archive for the same
+ * contents, however many threads it runs on and whatever it could reuse of the previous archive
+ */
+public class PackageDaemonTest {
+
+    @Rule
+    public MojoRule mojoRule = new MojoRule();
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private Path binDirectory;
+    private Path library;
+    private MavenProject project;
+
+    @Before
+    public void layOutDaemon() throws IOException {
+        binDirectory = temporaryFolder.newFolder("bin").toPath();
+        Path script = binDirectory.resolve("my-daemon");
+        Files.write(script, "#! /bin/bash\necho started\n".getBytes(StandardCharsets.UTF_8));
+        script.toFile().setExecutable(true);
+        Files.createDirectories(binDirectory.resolve("common"));
+        Files.write(binDirectory.resolve("common/common.sh"), config(1).getBytes(StandardCharsets.UTF_8));
+        Files.write(binDirectory.resolve("app-config.sh"), config(20000).getBytes(StandardCharsets.UTF_8));
+        Files.write(binDirectory.resolve(GenerationManifest.MANIFEST_FILE), "digest".getBytes(StandardCharsets.UTF_8));
+
+        byte[] jar = new byte[300 * 1024];
+        new Random(42).nextBytes(jar);
+        library = temporaryFolder.newFolder("repository").toPath().resolve("library-1.0.jar");
+        Files.write(library, jar);
+
+        DefaultArtifactHandler handler = new DefaultArtifactHandler("jar");
+        handler.setAddedToClasspath(true);
+        DefaultArtifact artifact = new DefaultArtifact("com.example", "library", "1.0", Artifact.SCOPE_COMPILE, "jar", null, handler);
+        artifact.setFile(library.toFile());
+        project = new MavenProject();
+        project.setArtifacts(Collections.<Artifact>singleton(artifact));
+    }
+
+    @Test
+    public void zipHoldsTheDaemonAsItIsInstalled() throws Exception {
+        Path archive = packageDaemon(ArchiveFormat.ZIP, "first", 4);
+
+        try (ZipFile zip = new ZipFile(archive.toFile())) {
+            assertThat(Collections.list(zip.entries()).toString(), is("[my-app/, my-app/bin/, my-app/bin/app-config.sh, "
+                + "my-app/bin/common/, my-app/bin/common/common.sh, my-app/bin/my-daemon, my-app/lib/, "
+                + "my-app/lib/library-1.0.jar, my-app/logs/, my-app/var/]"));
+
+            ZipEntry config = zip.getEntry("my-app/bin/app-config.sh");
+            assertThat("Config should be deflated", config.getMethod(), is(ZipEntry.DEFLATED));
+            assertThat(read(zip.getInputStream(config)), is(Files.readAllBytes(binDirectory.resolve("app-config.sh"))));
+
+            ZipEntry jar = zip.getEntry("my-app/lib/library-1.0.jar");
+            assertThat("Jars should be stored", jar.getMethod(), is(ZipEntry.STORED));
+            assertThat(read(zip.getInputStream(jar)), is(Files.readAllBytes(library)));
+        }
+    }
+
+    @Test
+    public void tarGzHoldsTheDaemonAsItIsInstalled() throws Exception {
+        Path archive = packageDaemon(ArchiveFormat.TAR_GZ, "first", 4);
+
+        Map<String, String> modes = new LinkedHashMap<>();
+        Map<String, byte[]> contents = readTar(archive, modes);
+        assertThat(modes.keySet().toString(), is("[my-app/, my-app/bin/, my-app/bin/app-config.sh, "
+            + "my-app/bin/common/, my-app/bin/common/common.sh, my-app/bin/my-daemon, my-app/lib/, "
+            + "my-app/lib/library-1.0.jar, my-app/logs/, my-app/var/]"));
+        assertThat("Scripts should stay executable", modes.get("my-app/bin/my-daemon"), is("0000755"));
+        assertThat(modes.get("my-app/bin/app-config.sh"), is("0000644"));
+
+        // The config spans several blocks, each primed with the one before it
+        assertThat(contents.get("my-app/bin/app-config.sh"), is(Files.readAllBytes(binDirectory.resolve("app-config.sh"))));
+        assertThat(contents.get("my-app/lib/library-1.0.jar"), is(Files.readAllBytes(library)));
+    }
+
+    @Test
+    public void archivesDoNotDependOnTheNumberOfThreads() throws Exception {
+        for (ArchiveFormat format : ArchiveFormat.values()) {
+            byte[] serial = Files.readAllBytes(packageDaemon(format, "serial", 1));
+            byte[] parallel = Files.readAllBytes(packageDaemon(format, "parallel", 8));
+            assertThat(format + " should be reproducible", parallel, is(serial));
+        }
+    }
+
+    @Test
+    public void reusedContentMatchesAFreshArchive() throws Exception {
+        for (ArchiveFormat format : ArchiveFormat.values()) {
+            packageDaemon(format, "reused", 4);
+            Files.write(binDirectory.resolve("common/common.sh"), config(3).getBytes(StandardCharsets.UTF_8));
+            Path reused = packageDaemon(format, "reused", 4);
+            Path fresh = packageDaemon(format, "fresh-" + format, 4);
+            assertThat(format + " should be the same, whatever was reused", Files.readAllBytes(reused), is(Files.readAllBytes(fresh)));
+
+            byte[] common = format == ArchiveFormat.ZIP
+                ? readZipEntry(reused, "my-app/bin/common/common.sh")
+                : readTar(reused, new LinkedHashMap<String, String>()).get("my-app/bin/common/common.sh");
+            assertThat(new String(common, StandardCharsets.UTF_8), is(config(3)));
+            Files.write(binDirectory.resolve("common/common.sh"), config(1).getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    public void timestampsMayBeGivenEitherWay() throws Exception {
+        assertThat(PackageDaemonMojo.parseTimestamp("1700000000"), is(1700000000000L));
+        assertThat(PackageDaemonMojo.parseTimestamp("2023-11-14T22:13:20Z"), is(1700000000000L));
+        assertThat(PackageDaemonMojo.parseTimestamp(null), is(946684800000L));
+    }
+
+    private Path packageDaemon(ArchiveFormat format, String archiveDirectory, int parallelism) throws Exception {
+        Path directory = temporaryFolder.getRoot().toPath().resolve(archiveDirectory);
+        PackageDaemonMojo mojo = new PackageDaemonMojo();
+        mojoRule.setVariableValueToObject(mojo, PackageDaemonMojo.PARAM_DAEMON_DIRECTORY, binDirectory.toString());
+        mojoRule.setVariableValueToObject(mojo, PackageDaemonMojo.PARAM_ARCHIVE_FORMAT, format.toString());
+        mojoRule.setVariableValueToObject(mojo, "archiveDirectory", directory.toString());
+        mojoRule.setVariableValueToObject(mojo, "archiveName", "my-app-daemon");
+        mojoRule.setVariableValueToObject(mojo, "baseDirectory", "my-app");
+        mojoRule.setVariableValueToObject(mojo, "parallelism", parallelism);
+        mojoRule.setVariableValueToObject(mojo, "attach", false);
+        mojoRule.setVariableValueToObject(mojo, "mavenProject", project);
+        mojo.execute();
+        return directory.resolve("my-app-daemon." + format.getExtension());
+    }
+
+    /***
+     * Some text of a few hundred bytes a line, which deflate can make something of
+     */
+    private static String config(int lines) {
+        StringBuilder config = new StringBuilder();
+        for (int line = 0; line < lines; line++) {
+            config.append("APP_SETTING_").append(line).append("=\"").append(Integer.toHexString(line * 7919)).append("\"\n");
+        }
+        return config.toString();
+    }
+
+    private static byte[] readZipEntry(Path archive, String name) throws IOException {
+        try (ZipFile zip = new ZipFile(archive.toFile())) {
+            return read(zip.getInputStream(zip.getEntry(name)));
+        }
+    }
+
+    /***
+     * Read a tar.gz as tar would, taking the name and size of each entry from its ustar header
+     *
+     * @param modes Filled in with the permissions of each entry, as they are written in the header
+     * @return The contents of each file
+     */
+    private static Map<String, byte[]> readTar(Path archive, Map<String, String> modes) throws IOException {
+        byte[] tar;
+        try (InputStream input = new GZIPInputStream(Files.newInputStream(archive))) {
+            tar = read(input);
+        }
+
+        Map<String, byte[]> contents = new LinkedHashMap<>();
+        int offset = 0;
+        while (tar[offset] != 0) {
+            String name = field(tar, offset + 345, 155).isEmpty()
+                ? field(tar, offset, 100) : field(tar, offset + 345, 155) + "/" + field(tar, offset, 100);
+            int size = Integer.parseInt(field(tar, offset + 124, 12), 8);
+            modes.put(name, field(tar, offset + 100, 8));
+            offset += 512;
+            contents.put(name, Arrays.copyOfRange(tar, offset, offset + size));
+            offset += (size + 511) / 512 * 512;
+        }
+        assertThat("The tar should end with two empty records", tar.length - offset, is(1024));
+        return contents;
+    }
+
+    private static String field(byte[] header, int offset, int length) {
+        int end = offset;
+        while (end < offset + length && header[end] != 0) {
+            end++;
+        }
+        return new String(header, offset, end - offset, StandardCharsets.UTF_8);
+    }
+
+    private static byte[] read(InputStream input) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        for (int read = input.read(buffer); read != -1; read = input.read(buffer)) {
+            output.write(buffer, 0, read);
+        }
+        return output.toByteArray();
+    }
+}
@@ -0,0 +1,61 @@
+package scripts.daemon.plugin.maven;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.artifact.DefaultArtifact;
+import org.apache.maven.artifact.handler.DefaultArtifactHandler;
+import org.apache.maven.project.MavenProject;
+import org.junit.Test;
+
+/***
+ * The runtime classpath is computed at build time, and must match the names the jars are given in the lib directory
+ */
+public class RuntimeClasspathTest {
+
+    @Test
+    public void preservesResolutionOrder() throws Exception {
+        MavenProject project = project(
+            artifact("zebra", "1.0", null, Artifact.SCOPE_COMPILE),
+            artifact("alpha", "2.0-SNAPSHOT", null, Artifact.SCOPE_RUNTIME),
+            artifact("native", "3.1", "linux-x86_64", Artifact.SCOPE_COMPILE));
+
+        assertThat(RuntimeClasspath.resolve(project, true), contains(
+            "lib/my-service-1.2.3.jar",
+            "lib/zebra-1.0.jar",
+            "lib/alpha-2.0-SNAPSHOT.jar",
+            "lib/native-3.1-linux-x86_64.jar"));
+    }
+
+    @Test
+    public void excludesNonRuntimeScopes() throws Exception {
+        MavenProject project = project(
+            artifact("runtime", "1.0", null, Artifact.SCOPE_RUNTIME),
+            artifact("junit", "4.12", null, Artifact.SCOPE_TEST),
+            artifact("servlet-api", "3.0", null, Artifact.SCOPE_PROVIDED));
+
+        assertThat(RuntimeClasspath.resolve(project, false), contains("lib/runtime-1.0.jar"));
+    }
+
+    private static MavenProject project(Artifact... dependencies) {
+        MavenProject project = new MavenProject();
+        project.setArtifact(artifact("my-service", "1.2.3", null, null));
+
+        Set<Artifact> artifacts = new LinkedHashSet<>();
+        for (Artifact dependency : dependencies) {
+            artifacts.add(dependency);
+        }
+        project.setArtifacts(artifacts);
+        return project;
+    }
+
+    private static Artifact artifact(String artifactId, String version, String classifier, String scope) {
+        DefaultArtifactHandler handler = new DefaultArtifactHandler("jar");
+        handler.setAddedToClasspath(true);
+        return new DefaultArtifact("com.example", artifactId, version, scope, "jar", classifier, handler);
+    }
+}